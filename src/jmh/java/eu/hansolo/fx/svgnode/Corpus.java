@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.FillRule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+
+/**
+ * Sample data for the benchmarks. The icon corpus are the paths of the
+ * rocket from the demo, the outline corpus is a large generated path that
+ * uses every path command.
+ */
+final class Corpus {
+    static final String ICON         = "icon";
+    static final String OUTLINE      = "outline";
+    static final int    OUTLINE_SIZE = 4 * 1024 * 1024;
+
+
+    // ******************** Constructors **************************************
+    private Corpus() {}
+
+
+    // ******************** Methods *******************************************
+    static List<SvgPath> load(final String corpus) {
+        switch (corpus) {
+            case ICON   : return loadIcon();
+            case OUTLINE: return List.of(new SvgPath(generatePath(OUTLINE_SIZE, 42), Color.CORNFLOWERBLUE, Color.BLACK, 1, FillRule.EVEN_ODD, null, true));
+            default     : throw new IllegalArgumentException("Unknown corpus " + corpus);
+        }
+    }
+
+    static List<String> loadPaths(final String corpus) {
+        final List<String> paths = new ArrayList<>();
+        for (SvgPath svgPath : load(corpus)) { paths.add(svgPath.getPath()); }
+        return paths;
+    }
+
+    private static List<SvgPath> loadIcon() {
+        final List<SvgPath> shapes = new ArrayList<>();
+        try (InputStream inputStream = Corpus.class.getResourceAsStream("/rocket.svg")) {
+            SvgLoader.load(inputStream, shapes::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return shapes;
+    }
+
+    /**
+     * Generates a path with about the given number of characters inside of
+     * a 512 x 512 area.
+     */
+    static String generatePath(final int size, final long seed) {
+        final Random        random = new Random(seed);
+        final StringBuilder path   = new StringBuilder(size + 64);
+        path.append("M256,256");
+        while (path.length() < size) {
+            switch (random.nextInt(10)) {
+                case 0 : path.append('L').append(coordinate(random)).append(',').append(coordinate(random)); break;
+                case 1 : path.append('l').append(delta(random)).append(' ').append(delta(random)); break;
+                case 2 : path.append('H').append(coordinate(random)).append('V').append(coordinate(random)); break;
+                case 3 : path.append('h').append(delta(random)).append('v').append(delta(random)); break;
+                case 4 : path.append('C').append(coordinate(random)).append(',').append(coordinate(random)).append(' ')
+                             .append(coordinate(random)).append(',').append(coordinate(random)).append(' ')
+                             .append(coordinate(random)).append(',').append(coordinate(random)); break;
+                case 5 : path.append('c').append(delta(random)).append(delta(random)).append(delta(random))
+                             .append(delta(random)).append(delta(random)).append(delta(random)); break;
+                case 6 : path.append('S').append(coordinate(random)).append(',').append(coordinate(random)).append(' ')
+                             .append(coordinate(random)).append(',').append(coordinate(random)); break;
+                case 7 : path.append('Q').append(coordinate(random)).append(',').append(coordinate(random)).append(' ')
+                             .append(coordinate(random)).append(',').append(coordinate(random))
+                             .append('T').append(coordinate(random)).append(',').append(coordinate(random)); break;
+                case 8 : path.append('a').append(String.format(Locale.ROOT, "%.1f %.1f %d %d %d", 5 + random.nextDouble() * 20, 5 + random.nextDouble() * 20,
+                                                               random.nextInt(90), random.nextInt(2), random.nextInt(2)))
+                             .append(delta(random)).append(delta(random)); break;
+                default: path.append("ZM").append(coordinate(random)).append(',').append(coordinate(random)); break;
+            }
+        }
+        return path.append('Z').toString();
+    }
+
+    private static String coordinate(final Random random) { return String.format(Locale.ROOT, "%.3f", random.nextDouble() * 512); }
+
+    private static String delta(final Random random) { return String.format(Locale.ROOT, "%+.3f", (random.nextDouble() - 0.5) * 40); }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures SvgPath.draw() into the GraphicsContext of a canvas that is not
+ * part of a scene, which covers the cost of encoding the drawing commands
+ * but not the rasterization on the render thread. The canvas is cleared
+ * completely before each draw so that its command buffer does not grow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark {
+    private static final double SIZE = 512;
+
+    @Param({ Corpus.ICON, Corpus.OUTLINE })
+    public String corpus;
+
+    private SvgPath[]       shapes;
+    private GraphicsContext ctx;
+
+
+    // ******************** Setup *********************************************
+    @Setup public void setup() {
+        final List<SvgPath> corpusShapes = Corpus.load(corpus);
+        shapes = corpusShapes.toArray(new SvgPath[0]);
+        ctx    = new Canvas(SIZE, SIZE).getGraphicsContext2D();
+    }
+
+
+    // ******************** Benchmarks ****************************************
+    @Benchmark public void draw() {
+        ctx.clearRect(0, 0, SIZE, SIZE);
+        for (SvgPath svgPath : shapes) { svgPath.draw(ctx); }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures how long it takes to compile the paths of a corpus into
+ * SvgGeometries, bypassing the GeometryCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({ Corpus.ICON, Corpus.OUTLINE })
+    public String corpus;
+
+    private String[]     paths;
+    private ByteBuffer[] buffers;
+
+
+    // ******************** Setup *********************************************
+    @Setup public void setup() {
+        final List<String> corpusPaths = Corpus.loadPaths(corpus);
+        paths   = corpusPaths.toArray(new String[0]);
+        buffers = new ByteBuffer[paths.length];
+        for (int i = 0 ; i < paths.length ; i++) { buffers[i] = ByteBuffer.wrap(paths[i].getBytes(StandardCharsets.US_ASCII)); }
+    }
+
+
+    // ******************** Benchmarks ****************************************
+    @Benchmark public void compileString(final Blackhole blackhole) {
+        for (String path : paths) { blackhole.consume(SvgGeometry.compile(path)); }
+    }
+
+    @Benchmark public void compileBytes(final Blackhole blackhole) {
+        for (ByteBuffer buffer : buffers) { blackhole.consume(SvgGeometry.compile(buffer.duplicate())); }
+    }
+}
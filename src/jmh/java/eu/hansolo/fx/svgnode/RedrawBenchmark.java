@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.FillRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the redraw of an SvgNode depending on the number of shapes,
+ * once as a full redraw and once as the chain of changing the fill of a
+ * single shape, the dirty notification and the partial redraw that
+ * follows. The redraws are called directly inside of a batch so that the
+ * AnimationTimer of the node is never started and no FX thread is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedrawBenchmark {
+    private static final double SIZE = 1000;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int shapeCount;
+
+    private SvgNode svgNode;
+    private SvgPath target;
+    private Color   fill;
+
+
+    // ******************** Setup *********************************************
+    @Setup public void setup() {
+        final Random        random = new Random(42);
+        final List<SvgPath> shapes = new ArrayList<>(shapeCount);
+        for (int i = 0 ; i < shapeCount ; i++) {
+            final String path = String.format(Locale.ROOT, "M%.1f,%.1fh20v20h-20Z", random.nextDouble() * (SIZE - 20), random.nextDouble() * (SIZE - 20));
+            shapes.add(new SvgPath(path, Color.hsb(random.nextDouble() * 360, 0.8, 0.9), Color.BLACK, 1, FillRule.NON_ZERO, null, true));
+        }
+        target  = shapes.get(shapeCount / 2);
+        fill    = (Color) target.getFill();
+        svgNode = new SvgNode();
+        svgNode.runBatch(() -> {
+            svgNode.setCanvasDimension(SIZE, SIZE);
+            svgNode.getShapes().setAll(shapes);
+            svgNode.redraw();
+        });
+    }
+
+    /**
+     * Partial redraws append to the command buffer of the canvas, a full
+     * redraw clears it again.
+     */
+    @Setup(Level.Iteration) public void clearCanvas() {
+        svgNode.runBatch(() -> {
+            svgNode.invalidateAll();
+            svgNode.redraw();
+        });
+    }
+
+
+    // ******************** Benchmarks ****************************************
+    @Benchmark public void fullRedraw() {
+        svgNode.runBatch(() -> {
+            svgNode.invalidateAll();
+            svgNode.redraw();
+        });
+    }
+
+    @Benchmark public void setFillAndRedraw() {
+        fill = fill.invert();
+        svgNode.runBatch(() -> {
+            target.setFill(fill);
+            svgNode.redraw();
+        });
+    }
+}
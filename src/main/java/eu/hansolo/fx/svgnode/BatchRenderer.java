@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.Effect;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+
+/**
+ * Draws a sequence of SvgPaths and SvgShapes without saving and restoring
+ * the state of the context for every path. The state of the context is
+ * tracked and only changed when the next path needs a different state.
+ * Adjacent paths with the same style are merged into one path that is
+ * filled and stroked once, as long as merging cannot change the result:
+ * the paths must not overlap (their bounds are disjoint, so the paint
+ * order does not matter), must not have an effect and must use colors,
+ * because gradients are relative to the bounds of the path they fill.
+ */
+final class BatchRenderer {
+    private GraphicsContext ctx;
+    private Effect          effect;
+    private Paint           fill;
+    private Paint           stroke;
+    private double          lineWidth;
+    private FillRule        fillRule;
+    private StrokeLineJoin  lineJoin;
+    private StrokeLineCap   lineCap;
+    private int             pending;
+    private boolean         pendingFill;
+    private boolean         pendingStroke;
+    private boolean         mergeable;
+    private double          minX;
+    private double          minY;
+    private double          maxX;
+    private double          maxY;
+    private Color           fillColor;
+    private int             fillArgb;
+    private Color           strokeColor;
+    private int             strokeArgb;
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Saves the state of the given context and starts a new sequence. The
+     * state is restored in end().
+     */
+    void begin(final GraphicsContext ctx) {
+        // The context has its default state outside of save() and restore()
+        this.ctx  = ctx;
+        effect    = null;
+        fill      = null;
+        stroke    = null;
+        lineWidth = Double.NaN;
+        fillRule  = null;
+        lineJoin  = null;
+        lineCap   = null;
+        pending   = 0;
+        ctx.save();
+    }
+
+    void draw(final SvgPath svgPath, final SvgGeometry geometry) {
+        if (!svgPath.isVisible() || geometry.isEmpty()) { return; }
+        final Paint   fill     = svgPath.getFill();
+        final Paint   stroke   = svgPath.getStroke();
+        final double  width    = svgPath.getStrokeWidth();
+        // The context ignores null paints and widths <= 0 and would use the previous values
+        final boolean doFill   = null != fill;
+        final boolean doStroke = null != stroke && width > 0;
+        if (!doFill && !doStroke) { return; }
+        final Bounds bounds = svgPath.getBounds();
+        draw(geometry, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), svgPath.getEffect(), doFill ? fill : null, doStroke ? stroke : null, width,
+             svgPath.getFillRule(), svgPath.getLineJoin(), svgPath.getLineCap());
+    }
+    void draw(final SvgShape svgShape, final SvgGeometry geometry) {
+        if (geometry.isEmpty()) { return; }
+        final Bounds bounds = svgShape.getBounds();
+        draw(geometry, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), svgShape.getFill(), svgShape.getStroke(), svgShape.getStrokeWidth(), svgShape.getStyle());
+    }
+    /**
+     * Draws the given geometry with a style that is packed like the style
+     * of an SvgShape. The bounds include the stroke.
+     */
+    void draw(final SvgGeometry geometry, final double minX, final double minY, final double maxX, final double maxY,
+              final int fill, final int stroke, final double strokeWidth, final byte style) {
+        final boolean doFill   = SvgShape.isFilled(fill);
+        final boolean doStroke = SvgShape.isStroked(stroke, strokeWidth);
+        if (!doFill && !doStroke) { return; }
+        draw(geometry, minX, minY, maxX, maxY, null, doFill ? toFillColor(fill) : null, doStroke ? toStrokeColor(stroke) : null, strokeWidth,
+             SvgShape.getFillRule(style), SvgShape.getLineJoin(style), SvgShape.getLineCap(style));
+    }
+    /**
+     * Draws the given geometry, a null fill or stroke is not drawn.
+     */
+    private void draw(final SvgGeometry geometry, final double minX, final double minY, final double maxX, final double maxY, final Effect effect,
+                      final Paint fill, final Paint stroke, final double width, final FillRule fillRule, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap) {
+        final boolean doFill    = null != fill;
+        final boolean doStroke  = null != stroke;
+        final boolean mergeable = null == effect && (!doFill || fill instanceof Color) && (!doStroke || stroke instanceof Color);
+        if (pending > 0) {
+            final boolean merge = mergeable && this.mergeable && doFill == pendingFill && doStroke == pendingStroke &&
+                                  (!doFill || (fill.equals(this.fill) && fillRule == this.fillRule)) &&
+                                  (!doStroke || (stroke.equals(this.stroke) && width == lineWidth && lineJoin == this.lineJoin && lineCap == this.lineCap)) &&
+                                  (minX >= this.maxX || maxX <= this.minX || minY >= this.maxY || maxY <= this.minY);
+            if (!merge) { flush(); }
+        }
+
+        if (0 == pending) {
+            applyState(effect, fill, stroke, width, fillRule, lineJoin, lineCap);
+            this.mergeable = mergeable;
+            pendingFill    = doFill;
+            pendingStroke  = doStroke;
+            this.minX      = minX;
+            this.minY      = minY;
+            this.maxX      = maxX;
+            this.maxY      = maxY;
+            ctx.beginPath();
+        } else {
+            this.minX = Math.min(this.minX, minX);
+            this.minY = Math.min(this.minY, minY);
+            this.maxX = Math.max(this.maxX, maxX);
+            this.maxY = Math.max(this.maxY, maxY);
+        }
+        geometry.appendTo(ctx);
+        pending++;
+    }
+
+    /**
+     * Fills and strokes the merged paths that have not been drawn yet.
+     */
+    void flush() {
+        if (0 == pending) { return; }
+        if (pendingFill) { ctx.fill(); }
+        if (pendingStroke) { ctx.stroke(); }
+        pending = 0;
+    }
+
+    /**
+     * Draws the pending paths and removes the effect from the context, e.g.
+     * before an image is drawn in between the paths.
+     */
+    void clearEffect() {
+        flush();
+        if (null == effect) { return; }
+        ctx.setEffect(null);
+        effect = null;
+    }
+
+    void end() {
+        flush();
+        ctx.restore();
+        ctx = null;
+    }
+
+    private void applyState(final Effect effect, final Paint fill, final Paint stroke, final double width,
+                            final FillRule fillRule, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap) {
+        if (effect != this.effect) {
+            ctx.setEffect(effect);
+            this.effect = effect;
+        }
+        if (null != fill) {
+            if (!fill.equals(this.fill)) {
+                ctx.setFill(fill);
+                this.fill = fill;
+            }
+            if (fillRule != this.fillRule) {
+                ctx.setFillRule(fillRule);
+                this.fillRule = fillRule;
+            }
+        }
+        if (null != stroke) {
+            if (!stroke.equals(this.stroke)) {
+                ctx.setStroke(stroke);
+                this.stroke = stroke;
+            }
+            if (width != lineWidth) {
+                ctx.setLineWidth(width);
+                lineWidth = width;
+            }
+            if (lineJoin != this.lineJoin) {
+                ctx.setLineJoin(lineJoin);
+                this.lineJoin = lineJoin;
+            }
+            if (lineCap != this.lineCap) {
+                ctx.setLineCap(lineCap);
+                this.lineCap = lineCap;
+            }
+        }
+    }
+
+    /**
+     * Returns the color of the given ARGB value, consecutive shapes with the
+     * same colors share the same instances.
+     */
+    private Color toFillColor(final int argb) {
+        if (null == fillColor || argb != fillArgb) {
+            fillColor = SvgShape.toColor(argb);
+            fillArgb  = argb;
+        }
+        return fillColor;
+    }
+    private Color toStrokeColor(final int argb) {
+        if (null == strokeColor || argb != strokeArgb) {
+            strokeColor = SvgShape.toColor(argb);
+            strokeArgb  = argb;
+        }
+        return strokeColor;
+    }
+}
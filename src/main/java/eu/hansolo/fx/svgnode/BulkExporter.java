@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Renders many sets of SvgPaths at several sizes in parallel with the
+ * SvgRasterizer, so no JavaFX toolkit is needed. Each rendered image is
+ * encoded as PNG or raw ARGB and handed to a sink. The number of images
+ * that are rendered, encoded or written at the same time is limited by
+ * a memory budget, so the memory used does not depend on the number of
+ * items.
+ * The shapes must not be modified while they are exported.
+ */
+public final class BulkExporter {
+    public  static final long   DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+    private static final int    PERMIT_SIZE                 = 1024;
+    private        final Format format;
+    private        final int    parallelism;
+    private        final long   maxInFlightBytes;
+    private              int    compressionLevel;
+
+    public enum Format { PNG, ARGB }
+
+
+    // ******************** Constructors **************************************
+    public BulkExporter() {
+        this(Format.PNG, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_IN_FLIGHT_BYTES);
+    }
+    /**
+     * @param format           the format of the data that is passed to the sink
+     * @param parallelism      the number of threads that render images
+     * @param maxInFlightBytes the maximum number of bytes of pixels and encoded data in flight
+     */
+    public BulkExporter(final Format format, final int parallelism, final long maxInFlightBytes) {
+        if (parallelism < 1) { throw new IllegalArgumentException("Parallelism must be at least 1"); }
+        if (maxInFlightBytes < PERMIT_SIZE) { throw new IllegalArgumentException("Memory budget too small"); }
+        this.format           = format;
+        this.parallelism      = parallelism;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.compressionLevel = PngEncoder.DEFAULT_COMPRESSION;
+    }
+
+
+    // ******************** Methods *******************************************
+    public Format getFormat() { return format; }
+
+    public int getParallelism() { return parallelism; }
+
+    public long getMaxInFlightBytes() { return maxInFlightBytes; }
+
+    public int getCompressionLevel() { return compressionLevel; }
+    public void setCompressionLevel(final int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) { throw new IllegalArgumentException("Compression level must be between 0 and 9"); }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Renders every item at every given size. The size is the number of
+     * pixels of the longer side of the item, the other side keeps the
+     * aspect ratio of the item. The sink is called from the worker threads
+     * and must be thread safe.
+     * The export stops at the first item that fails and rethrows its
+     * exception (or error) after the images in flight have been finished.
+     * Each worker keeps a pixel buffer for the largest image, these buffers
+     * are taken from the memory budget up front unless they would use more
+     * than half of it, in which case every image gets its own buffer.
+     * @return the statistics of the export
+     */
+    public ExportStatistics export(final Collection<Item> items, final int[] sizes, final Sink sink) throws IOException, InterruptedException {
+        // Each worker keeps a pixel buffer for the largest image
+        long maxPixels = 0;
+        for (Item item : items) {
+            for (int size : sizes) { maxPixels = Math.max(maxPixels, (long) getWidth(item, size) * getHeight(item, size)); }
+        }
+        final long                                   bufferBytes  = 4L * maxPixels * parallelism;
+        final boolean                                reuseBuffers = bufferBytes <= maxInFlightBytes / 2;
+        final int                                    maxPermits   = (int) Math.min(Integer.MAX_VALUE, (maxInFlightBytes - (reuseBuffers ? bufferBytes : 0)) / PERMIT_SIZE);
+        final Semaphore                              inFlight     = new Semaphore(maxPermits);
+        final Queue<ExportStatistics.ItemStatistics> statistics   = new ConcurrentLinkedQueue<>();
+        final AtomicReference<Throwable>             failure      = new AtomicReference<>();
+        final ThreadLocal<int[]>                     buffers      = reuseBuffers ? new ThreadLocal<>() : null;
+        final int                                    bufferSize   = (int) maxPixels;
+        final ExecutorService                        executor     = Executors.newFixedThreadPool(parallelism, runnable -> {
+            final Thread thread = new Thread(runnable, "svgnode-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long start = System.nanoTime();
+        try {
+            submit:
+            for (Item item : items) {
+                for (int size : sizes) {
+                    if (null != failure.get()) { break submit; }
+                    final double scale   = getScale(item, size);
+                    final int    width   = getWidth(item, size);
+                    final int    height  = getHeight(item, size);
+                    final long   raw     = 4L * width * height;
+                    // The encoded data is at most as large as the raw data, PNG encoding also holds the compressed data and the file
+                    final long   bytes   = (Format.PNG == format ? 3 * raw : raw) + (reuseBuffers ? 0 : raw);
+                    final int    permits = Math.min(maxPermits, toPermits(bytes));
+                    inFlight.acquire(permits);
+                    executor.execute(() -> {
+                        try {
+                            statistics.add(render(item, width, height, scale, reuseBuffers ? getBuffer(buffers, bufferSize) : new int[width * height], sink));
+                        } catch (Throwable t) {
+                            // Errors are rethrown as well, a worker must not die silently
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            inFlight.release(permits);
+                        }
+                    });
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        final Throwable throwable = failure.get();
+        if (throwable instanceof IOException)      { throw (IOException) throwable; }
+        if (throwable instanceof RuntimeException) { throw (RuntimeException) throwable; }
+        if (throwable instanceof Error)            { throw (Error) throwable; }
+        return new ExportStatistics(List.copyOf(statistics), System.nanoTime() - start);
+    }
+
+    private ExportStatistics.ItemStatistics render(final Item item, final int width, final int height, final double scale, final int[] pixels,
+                                                   final Sink sink) throws IOException {
+        final long          t0         = System.nanoTime();
+        final SvgRasterizer rasterizer = new SvgRasterizer(pixels, width, height);
+        rasterizer.clear();
+        rasterizer.setTransform(scale, scale, 0, 0);
+        rasterizer.draw(item.getShapes());
+
+        final long   t1 = System.nanoTime();
+        final byte[] data;
+        if (Format.PNG == format) {
+            data = PngEncoder.encode(pixels, width, height, compressionLevel);
+        } else {
+            data = new byte[width * height * 4];
+            ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN).asIntBuffer().put(pixels, 0, width * height);
+        }
+
+        final long t2 = System.nanoTime();
+        sink.write(item, width, height, data);
+        final long t3 = System.nanoTime();
+        return new ExportStatistics.ItemStatistics(item.getName(), width, height, data.length, t1 - t0, t2 - t1, t3 - t2);
+    }
+
+    private static int[] getBuffer(final ThreadLocal<int[]> buffers, final int size) {
+        int[] buffer = buffers.get();
+        if (null == buffer) {
+            buffer = new int[size];
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static double getScale(final Item item, final int size) { return size / Math.max(item.getWidth(), item.getHeight()); }
+
+    private static int getWidth(final Item item, final int size) { return Math.max(1, (int) Math.round(item.getWidth() * getScale(item, size))); }
+
+    private static int getHeight(final Item item, final int size) { return Math.max(1, (int) Math.round(item.getHeight() * getScale(item, size))); }
+
+    private static int toPermits(final long bytes) { return (int) Math.min(Integer.MAX_VALUE, (bytes + PERMIT_SIZE - 1) / PERMIT_SIZE); }
+
+
+    // ******************** Inner Classes *************************************
+    /**
+     * A named set of shapes and the size of the area they are drawn in,
+     * e.g. the canvas dimension of the SvgNode that shows them.
+     */
+    public static final class Item {
+        private final String        name;
+        private final List<SvgPath> shapes;
+        private final double        width;
+        private final double        height;
+
+
+        public Item(final String name, final List<SvgPath> shapes, final double width, final double height) {
+            if (!(width > 0) || !(height > 0)) { throw new IllegalArgumentException("Size must be positive"); }
+            this.name   = name;
+            this.shapes = List.copyOf(shapes);
+            this.width  = width;
+            this.height = height;
+        }
+
+
+        public String getName() { return name; }
+
+        public List<SvgPath> getShapes() { return shapes; }
+
+        public double getWidth() { return width; }
+
+        public double getHeight() { return height; }
+    }
+
+    /**
+     * Receives the encoded images. PNG data is a complete file, ARGB data
+     * contains one big endian int per pixel in rows from top to bottom.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void write(Item item, int width, int height, byte[] data) throws IOException;
+
+        /**
+         * Returns a sink that writes each image to a file named
+         * name_widthxheight.png (or .argb) in the given directory.
+         */
+        static Sink toDirectory(final Path directory, final Format format) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final String extension = Format.PNG == format ? ".png" : ".argb";
+            return (item, width, height, data) -> Files.write(directory.resolve(item.getName() + "_" + width + "x" + height + extension), data);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+
+/**
+ * Keeps track of the SvgPaths of an SvgNode that changed since the last
+ * redraw. Each path gets a slot when it is added to the node and reports
+ * its changes directly into a bitset of dirty slots, so the node needs no
+ * listener per path and a redraw only visits the slots that changed.
+ * Slots of removed paths are reused, a path that is added more than once
+ * keeps its slot until all of its occurrences are removed. A path that is
+ * shown by several nodes reports to the trackers of all of them.
+ */
+final class DirtyTracker {
+    private static final int       INITIAL_CAPACITY = 64;
+    private        final BitSet    dirty;
+    private        final Runnable  onDirty;
+    private              SvgPath[] shapes;
+    private              int[]     counts;
+    private              int[]     freeSlots;
+    private              int       freeCount;
+    private              int       nextSlot;
+
+
+    // ******************** Constructors **************************************
+    /**
+     * @param onDirty called when a slot becomes dirty
+     */
+    DirtyTracker(final Runnable onDirty) {
+        this.dirty     = new BitSet(INITIAL_CAPACITY);
+        this.onDirty   = onDirty;
+        this.shapes    = new SvgPath[INITIAL_CAPACITY];
+        this.counts    = new int[INITIAL_CAPACITY];
+        this.freeSlots = new int[INITIAL_CAPACITY];
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the number of slots, which is larger than every slot in use.
+     */
+    int capacity() { return shapes.length; }
+
+    /**
+     * Assigns a slot to the given path and marks it as dirty.
+     */
+    int attach(final SvgPath svgPath) {
+        final int existing = svgPath.getSlot(this);
+        if (existing >= 0) {
+            counts[existing]++;
+            dirty.set(existing);
+            return existing;
+        }
+        final int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = nextSlot++;
+            if (slot == shapes.length) {
+                shapes = Arrays.copyOf(shapes, shapes.length * 2);
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+        }
+        shapes[slot] = svgPath;
+        counts[slot] = 1;
+        svgPath.addTracker(this, slot);
+        dirty.set(slot);
+        return slot;
+    }
+
+    /**
+     * Removes one occurrence of the path in the given slot and returns true
+     * if the slot has been released.
+     */
+    boolean detach(final int slot) {
+        if (--counts[slot] > 0) { return false; }
+        release(slot);
+        return true;
+    }
+
+    private void release(final int slot) {
+        final SvgPath svgPath = shapes[slot];
+        if (null == svgPath) { return; }
+        svgPath.removeTracker(this);
+        counts[slot] = 0;
+        shapes[slot] = null;
+        dirty.clear(slot);
+        if (freeCount == freeSlots.length) { freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2); }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Returns the slot of the given path or -1 if it does not report to
+     * this tracker.
+     */
+    int slotOf(final SvgPath svgPath) { return svgPath.getSlot(this); }
+
+    SvgPath get(final int slot) { return shapes[slot]; }
+
+    void markDirty(final int slot) {
+        if (dirty.get(slot)) { return; }
+        dirty.set(slot);
+        onDirty.run();
+    }
+
+    /**
+     * Returns the first dirty slot that is equal to or after the given slot
+     * or -1 if there is none.
+     */
+    int nextDirty(final int slot) { return dirty.nextSetBit(slot); }
+
+    void clearDirty() { dirty.clear(); }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import java.util.List;
+
+
+/**
+ * Timing and throughput of a BulkExporter run. The times of the items are
+ * measured per thread, so their sums can exceed the wall time.
+ */
+public final class ExportStatistics {
+    private final List<ItemStatistics> items;
+    private final long                 wallNanos;
+
+
+    // ******************** Constructors **************************************
+    ExportStatistics(final List<ItemStatistics> items, final long wallNanos) {
+        this.items     = items;
+        this.wallNanos = wallNanos;
+    }
+
+
+    // ******************** Methods *******************************************
+    public List<ItemStatistics> getItems() { return items; }
+
+    public int getImageCount() { return items.size(); }
+
+    public long getPixelCount() { return items.stream().mapToLong(item -> (long) item.getWidth() * item.getHeight()).sum(); }
+
+    public long getByteCount() { return items.stream().mapToLong(ItemStatistics::getBytes).sum(); }
+
+    public double getWallMillis() { return wallNanos / 1e6; }
+
+    public double getImagesPerSecond() { return 0 == wallNanos ? 0 : items.size() * 1e9 / wallNanos; }
+
+    public double getPixelsPerSecond() { return 0 == wallNanos ? 0 : getPixelCount() * 1e9 / wallNanos; }
+
+    public double getBytesPerSecond() { return 0 == wallNanos ? 0 : getByteCount() * 1e9 / wallNanos; }
+
+    public double getAverageRasterizeMillis() { return items.stream().mapToLong(ItemStatistics::getRasterizeNanos).average().orElse(0) / 1e6; }
+
+    public double getAverageEncodeMillis() { return items.stream().mapToLong(ItemStatistics::getEncodeNanos).average().orElse(0) / 1e6; }
+
+    public double getAverageWriteMillis() { return items.stream().mapToLong(ItemStatistics::getWriteNanos).average().orElse(0) / 1e6; }
+
+    /**
+     * Returns the given percentile (0 - 100) of the total time per image in
+     * milliseconds.
+     */
+    public double getPercentileMillis(final double percentile) {
+        if (items.isEmpty()) { return 0; }
+        final long[] totals = items.stream().mapToLong(ItemStatistics::getTotalNanos).sorted().toArray();
+        final int    index  = (int) Math.ceil(Helper.clamp(0, 100, percentile) / 100 * totals.length) - 1;
+        return totals[Math.max(0, index)] / 1e6;
+    }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"images\":").append(getImageCount()).append(",")
+                                  .append("\"pixels\":").append(getPixelCount()).append(",")
+                                  .append("\"bytes\":").append(getByteCount()).append(",")
+                                  .append("\"wall_ms\":").append(getWallMillis()).append(",")
+                                  .append("\"images_per_s\":").append(getImagesPerSecond()).append(",")
+                                  .append("\"avg_rasterize_ms\":").append(getAverageRasterizeMillis()).append(",")
+                                  .append("\"avg_encode_ms\":").append(getAverageEncodeMillis()).append(",")
+                                  .append("\"avg_write_ms\":").append(getAverageWriteMillis()).append(",")
+                                  .append("\"p95_ms\":").append(getPercentileMillis(95))
+                                  .append("}")
+                                  .toString();
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public static final class ItemStatistics {
+        private final String name;
+        private final int    width;
+        private final int    height;
+        private final int    bytes;
+        private final long   rasterizeNanos;
+        private final long   encodeNanos;
+        private final long   writeNanos;
+
+
+        ItemStatistics(final String name, final int width, final int height, final int bytes, final long rasterizeNanos, final long encodeNanos, final long writeNanos) {
+            this.name           = name;
+            this.width          = width;
+            this.height         = height;
+            this.bytes          = bytes;
+            this.rasterizeNanos = rasterizeNanos;
+            this.encodeNanos    = encodeNanos;
+            this.writeNanos     = writeNanos;
+        }
+
+
+        public String getName() { return name; }
+
+        public int getWidth() { return width; }
+
+        public int getHeight() { return height; }
+
+        public int getBytes() { return bytes; }
+
+        public long getRasterizeNanos() { return rasterizeNanos; }
+
+        public long getEncodeNanos() { return encodeNanos; }
+
+        public long getWriteNanos() { return writeNanos; }
+
+        public long getTotalNanos() { return rasterizeNanos + encodeNanos + writeNanos; }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Process wide cache that maps SVG path strings to shared, immutable
+ * SvgGeometry instances. The geometries are softly referenced so that
+ * paths which are no longer used can be reclaimed by the garbage collector.
+ * All methods are thread safe.
+ */
+public final class GeometryCache {
+    private static final ConcurrentMap<String, GeometryReference> CACHE  = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<SvgGeometry>              QUEUE  = new ReferenceQueue<>();
+    private static final LongAdder                                HITS   = new LongAdder();
+    private static final LongAdder                                MISSES = new LongAdder();
+    private static final LongAdder                                NANOS  = new LongAdder();
+
+
+    // ******************** Constructors **************************************
+    private GeometryCache() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the shared geometry for the given path and compiles it if it
+     * is not in the cache yet.
+     * @param path the SVG path data
+     * @return the shared geometry, {@link SvgGeometry#EMPTY} for null or blank paths
+     * @throws IllegalArgumentException if the path contains invalid data
+     */
+    public static SvgGeometry get(final String path) {
+        if (null == path) { return SvgGeometry.EMPTY; }
+        expungeStaleEntries();
+
+        final GeometryReference reference = CACHE.get(path);
+        final SvgGeometry       cached    = null == reference ? null : reference.get();
+        if (null != cached) {
+            HITS.increment();
+            return cached;
+        }
+
+        MISSES.increment();
+        final RenderEvents.ParseEvent event = new RenderEvents.ParseEvent();
+        event.begin();
+        final long        start    = System.nanoTime();
+        final SvgGeometry compiled = SvgGeometry.compile(path);
+        NANOS.add(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.pathLength  = path.length();
+            event.commands    = compiled.getCommandCount();
+            event.coordinates = compiled.getCoordinateCount();
+            event.commit();
+        }
+        if (compiled.isEmpty()) { return compiled; }
+        final SvgGeometry shared = CACHE.compute(path, (key, existing) -> null != existing && null != existing.get() ? existing : new GeometryReference(key, compiled, QUEUE)).get();
+        return null == shared ? compiled : shared;
+    }
+
+    /**
+     * Returns the number of paths in the cache. This includes entries whose
+     * geometry has been reclaimed but that have not been removed yet.
+     */
+    public static int getSize() {
+        expungeStaleEntries();
+        return CACHE.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes that are retained by the
+     * geometries and path strings in the cache.
+     */
+    public static long getRetainedBytes() {
+        expungeStaleEntries();
+        long bytes = 0;
+        for (GeometryReference reference : CACHE.values()) {
+            final SvgGeometry geometry = reference.get();
+            if (null != geometry) { bytes += geometry.getSizeInBytes() + 40 + 2L * reference.key.length(); }
+        }
+        return bytes;
+    }
+
+    public static long getHits() { return HITS.sum(); }
+
+    public static long getMisses() { return MISSES.sum(); }
+
+    /**
+     * Returns the total time in nanoseconds that was spent on compiling the
+     * paths that were not in the cache.
+     */
+    public static long getParseNanos() { return NANOS.sum(); }
+
+    public static double getHitRate() {
+        final long hits     = HITS.sum();
+        final long requests = hits + MISSES.sum();
+        return 0 == requests ? 0 : (double) hits / requests;
+    }
+
+    public static void clear() {
+        CACHE.clear();
+        HITS.reset();
+        MISSES.reset();
+        NANOS.reset();
+    }
+
+    private static void expungeStaleEntries() {
+        Reference<? extends SvgGeometry> reference;
+        while (null != (reference = QUEUE.poll())) {
+            final GeometryReference stale = (GeometryReference) reference;
+            CACHE.remove(stale.key, stale);
+        }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class GeometryReference extends SoftReference<SvgGeometry> {
+        final String key;
+
+
+        GeometryReference(final String key, final SvgGeometry geometry, final ReferenceQueue<SvgGeometry> queue) {
+            super(geometry, queue);
+            this.key = key;
+        }
+    }
+}
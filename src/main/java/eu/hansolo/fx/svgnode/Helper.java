@@ -16,11 +16,94 @@
 
 package eu.hansolo.fx.svgnode;
 
+import javafx.scene.effect.Bloom;
+import javafx.scene.effect.BoxBlur;
+import javafx.scene.effect.ColorAdjust;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.effect.Effect;
+import javafx.scene.effect.GaussianBlur;
+import javafx.scene.effect.Glow;
+import javafx.scene.effect.InnerShadow;
+import javafx.scene.effect.MotionBlur;
+import javafx.scene.effect.SepiaTone;
+import javafx.scene.effect.Shadow;
+import javafx.scene.paint.Color;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+
 public class Helper {
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+
 
     public static final double clamp(final double min, final double max, final double value) {
         if (value < min) return min;
         if (value > max) return max;
         return value;
     }
+
+    /**
+     * Returns the distance by which the given effect can extend the area
+     * that is covered by a shape. Effects that are not known to have a
+     * bounded output return Double.POSITIVE_INFINITY.
+     */
+    public static final double getEffectPadding(final Effect effect) {
+        if (null == effect) { return 0; }
+        if (effect instanceof DropShadow) {
+            final DropShadow dropShadow = (DropShadow) effect;
+            return dropShadow.getRadius() + Math.max(Math.abs(dropShadow.getOffsetX()), Math.abs(dropShadow.getOffsetY())) + getEffectPadding(dropShadow.getInput());
+        } else if (effect instanceof InnerShadow) {
+            return getEffectPadding(((InnerShadow) effect).getInput());
+        } else if (effect instanceof Shadow) {
+            return ((Shadow) effect).getRadius() + getEffectPadding(((Shadow) effect).getInput());
+        } else if (effect instanceof GaussianBlur) {
+            return ((GaussianBlur) effect).getRadius() + getEffectPadding(((GaussianBlur) effect).getInput());
+        } else if (effect instanceof BoxBlur) {
+            final BoxBlur boxBlur = (BoxBlur) effect;
+            return Math.max(boxBlur.getWidth(), boxBlur.getHeight()) * 0.5 * boxBlur.getIterations() + getEffectPadding(boxBlur.getInput());
+        } else if (effect instanceof MotionBlur) {
+            return ((MotionBlur) effect).getRadius() + getEffectPadding(((MotionBlur) effect).getInput());
+        } else if (effect instanceof Glow) {
+            return getEffectPadding(((Glow) effect).getInput());
+        } else if (effect instanceof Bloom) {
+            return getEffectPadding(((Bloom) effect).getInput());
+        } else if (effect instanceof ColorAdjust) {
+            return getEffectPadding(((ColorAdjust) effect).getInput());
+        } else if (effect instanceof SepiaTone) {
+            return getEffectPadding(((SepiaTone) effect).getInput());
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Converts the given color into a 32 bit ARGB value.
+     */
+    public static final int toArgb(final Color color) {
+        if (null == color) { return 0; }
+        return (int) Math.round(color.getOpacity() * 255) << 24 |
+               (int) Math.round(color.getRed() * 255)     << 16 |
+               (int) Math.round(color.getGreen() * 255)   << 8  |
+               (int) Math.round(color.getBlue() * 255);
+    }
+
+    public static final Color fromArgb(final int argb) {
+        return Color.rgb(argb >> 16 & 0xFF, argb >> 8 & 0xFF, argb & 0xFF, (argb >>> 24) / 255.0);
+    }
+
+    /**
+     * Returns the executor that is used for background work like compiling
+     * paths. On Java 21+ this executor starts a virtual thread per task,
+     * on older versions the common ForkJoinPool is used.
+     */
+    public static final Executor getDefaultExecutor() { return DEFAULT_EXECUTOR; }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return ForkJoinPool.commonPool();
+        }
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.geometry.Bounds;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.FillRule;
+
+
+/**
+ * Exact hit tests on the compiled geometry of SvgPaths. The fill is tested
+ * with the fill rule of the shape and the stroke is tested on the outline
+ * that the PathStroker creates for the stroke width, line join and line
+ * cap of the shape, so the result matches what is drawn. Curves are
+ * flattened with the given tolerance.
+ */
+final class HitTester {
+
+    // ******************** Constructors **************************************
+    private HitTester() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns true if the given point is covered by the fill or the stroke
+     * of the given shape.
+     */
+    static boolean contains(final SvgPath svgPath, final double x, final double y, final double tolerance) {
+        if (!svgPath.isVisible() || svgPath.getGeometry().isEmpty()) { return false; }
+        final Bounds bounds = svgPath.getBounds();
+        if (x < bounds.getMinX() || x > bounds.getMaxX() || y < bounds.getMinY() || y > bounds.getMaxY()) { return false; }
+        return test(svgPath, new Probe(x, y, x, y), tolerance);
+    }
+
+    /**
+     * Returns true if the fill or the stroke of the given shape covers any
+     * part of the given rectangle.
+     */
+    static boolean intersects(final SvgPath svgPath, final double minX, final double minY, final double maxX, final double maxY, final double tolerance) {
+        if (!svgPath.isVisible() || svgPath.getGeometry().isEmpty()) { return false; }
+        final Bounds bounds = svgPath.getBounds();
+        if (maxX < bounds.getMinX() || minX > bounds.getMaxX() || maxY < bounds.getMinY() || minY > bounds.getMaxY()) { return false; }
+        return test(svgPath, new Probe(minX, minY, maxX, maxY), tolerance);
+    }
+
+    private static boolean test(final SvgPath svgPath, final Probe probe, final double tolerance) {
+        final SvgGeometry geometry = svgPath.getGeometry();
+        if (null != svgPath.getFill()) {
+            probe.reset();
+            PathFlattener.flatten(geometry, tolerance, probe);
+            probe.closePath();
+            if (probe.isHit(FillRule.EVEN_ODD == svgPath.getFillRule())) { return true; }
+        }
+        final Paint  stroke      = svgPath.getStroke();
+        final double strokeWidth = svgPath.getStrokeWidth();
+        if (null != stroke && strokeWidth > 0) {
+            probe.reset();
+            final PathStroker stroker = new PathStroker(strokeWidth * 0.5, svgPath.getLineJoin(), svgPath.getLineCap(), tolerance, probe);
+            PathFlattener.flatten(geometry, tolerance, stroker);
+            stroker.finish(false);
+            probe.closePath();
+            return probe.isHit(false);
+        }
+        return false;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /**
+     * Collects the winding number of the outline around the first corner of
+     * the rectangle and checks whether any edge of the outline touches the
+     * rectangle. If no edge touches it, the rectangle is either completely
+     * inside or completely outside of the outline and the winding number
+     * of one corner decides.
+     */
+    private static class Probe implements PathFlattener.Sink {
+        private final double   minX;
+        private final double   minY;
+        private final double   maxX;
+        private final double   maxY;
+        private final double[] p;
+        private final double[] q;
+        private       int      winding;
+        private       boolean  touched;
+        private       boolean  open;
+        private       double   startX;
+        private       double   startY;
+        private       double   lastX;
+        private       double   lastY;
+
+
+        Probe(final double minX, final double minY, final double maxX, final double maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.p    = new double[4];
+            this.q    = new double[4];
+        }
+
+
+        void reset() {
+            winding = 0;
+            touched = false;
+            open    = false;
+        }
+
+        boolean isHit(final boolean evenOdd) {
+            return touched || (evenOdd ? (winding & 1) != 0 : winding != 0);
+        }
+
+        @Override public void moveTo(final double x, final double y) {
+            closePath();
+            startX = lastX = x;
+            startY = lastY = y;
+            open   = true;
+        }
+
+        @Override public void lineTo(final double x, final double y) {
+            edge(lastX, lastY, x, y);
+            lastX = x;
+            lastY = y;
+        }
+
+        @Override public void closePath() {
+            if (!open) { return; }
+            edge(lastX, lastY, startX, startY);
+            lastX = startX;
+            lastY = startY;
+            open  = false;
+        }
+
+        private void edge(final double x0, final double y0, final double x1, final double y1) {
+            if (touched || (x0 == x1 && y0 == y1)) { return; }
+            // Winding number around (minX, minY), counted on a ray to the right
+            if (y0 <= minY) {
+                if (y1 > minY && cross(x0, y0, x1, y1) > 0) { winding++; }
+            } else if (y1 <= minY && cross(x0, y0, x1, y1) < 0) {
+                winding--;
+            }
+            touched = clips(x0, y0, x1, y1);
+        }
+
+        private double cross(final double x0, final double y0, final double x1, final double y1) {
+            return (x1 - x0) * (minY - y0) - (minX - x0) * (y1 - y0);
+        }
+
+        /** Liang-Barsky test of the segment against the rectangle */
+        private boolean clips(final double x0, final double y0, final double x1, final double y1) {
+            final double dx = x1 - x0;
+            final double dy = y1 - y0;
+            // Scratch arrays of the probe, clips() is called for every edge
+            p[0] = -dx;
+            p[1] = dx;
+            p[2] = -dy;
+            p[3] = dy;
+            q[0] = x0 - minX;
+            q[1] = maxX - x0;
+            q[2] = y0 - minY;
+            q[3] = maxY - y0;
+            double t0 = 0;
+            double t1 = 1;
+            for (int i = 0 ; i < 4 ; i++) {
+                if (p[i] == 0) {
+                    if (q[i] < 0) { return false; }
+                } else {
+                    final double t = q[i] / p[i];
+                    if (p[i] < 0) {
+                        if (t > t1) { return false; }
+                        if (t > t0) { t0 = t; }
+                    } else {
+                        if (t < t0) { return false; }
+                        if (t < t1) { t1 = t; }
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Read-only view on a binary icon pack file written by the IconPackWriter.
+ * The whole file is memory mapped and the geometries of the shapes read
+ * their commands and coordinates directly from the mapped buffer.
+ *
+ * File layout (all values little endian):
+ * <pre>
+ * header       magic 'SVGP' (int), version (short), flags (short), icon count (int),
+ *              shape count (int), icon table offset (int), shape table offset (int),
+ *              names offset (int), reserved (int)
+ * icon table   per icon: name offset, name length, first shape, shape count (int each)
+ * shape table  per shape: commands offset, command count, coordinates offset,
+ *              coordinate count (int each), fill ARGB (int), stroke ARGB (int),
+ *              stroke width (float), fill rule, line join, line cap, flags (byte each),
+ *              min x, min y, max x, max y (double each)
+ * names        UTF-8 encoded icon names
+ * commands     one byte per command (see SvgGeometry)
+ * coordinates  8 byte aligned doubles
+ * </pre>
+ * The shape flags are visible (bit 0), no fill (bit 1) and no stroke (bit 2),
+ * the ARGB value of an absent paint is 0.
+ */
+public final class IconPack {
+    public  static final int                  MAGIC            = 0x50475653; // 'SVGP'
+    public  static final short                VERSION          = 1;
+    static        final int                  HEADER_SIZE      = 32;
+    static        final int                  ICON_ENTRY_SIZE  = 16;
+    static        final int                  SHAPE_ENTRY_SIZE = 64;
+    static        final int                  FLAG_VISIBLE     = 1;
+    static        final int                  FLAG_NO_FILL     = 1 << 1;
+    static        final int                  FLAG_NO_STROKE   = 1 << 2;
+    private       final ByteBuffer           buffer;
+    private       final int                  iconCount;
+    private       final int                  iconTableOffset;
+    private       final int                  shapeTableOffset;
+    private       final int                  namesOffset;
+    private       final Map<String, Integer> indices;
+
+
+    // ******************** Constructors **************************************
+    private IconPack(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) { throw new IOException("Not an icon pack"); }
+        final short version = buffer.getShort(4);
+        if (version != VERSION) { throw new IOException("Unsupported icon pack version " + version); }
+        this.iconCount        = buffer.getInt(8);
+        this.iconTableOffset  = buffer.getInt(16);
+        this.shapeTableOffset = buffer.getInt(20);
+        this.namesOffset      = buffer.getInt(24);
+        this.indices          = new HashMap<>(iconCount * 2);
+        for (int i = 0 ; i < iconCount ; i++) { indices.put(getName(i), i); }
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Maps the given file into memory. The file must not be modified while
+     * the icon pack is in use.
+     */
+    public static IconPack open(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new IconPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    /**
+     * Reads an icon pack from the given buffer (e.g. a resource that has been
+     * read into a direct buffer). The buffer must not be modified.
+     */
+    public static IconPack of(final ByteBuffer buffer) throws IOException {
+        return new IconPack(buffer.slice());
+    }
+
+    public int getIconCount() { return iconCount; }
+
+    public String getName(final int icon) {
+        final int    entry = iconEntry(icon);
+        final byte[] name  = new byte[buffer.getInt(entry + 4)];
+        final ByteBuffer names = buffer.duplicate();
+        names.position(namesOffset + buffer.getInt(entry));
+        names.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the index of the icon with the given name or -1 if the
+     * icon pack does not contain such an icon.
+     */
+    public int indexOf(final String name) { return indices.getOrDefault(name, -1); }
+
+    public int getShapeCount(final int icon) { return buffer.getInt(iconEntry(icon) + 12); }
+
+    /**
+     * Returns the geometry of the given shape of the given icon. The geometry
+     * reads its data directly from the mapped file.
+     */
+    public SvgGeometry getGeometry(final int icon, final int shape) {
+        final int entry             = shapeEntry(icon, shape);
+        final int commandsOffset    = buffer.getInt(entry);
+        final int commandCount      = buffer.getInt(entry + 4);
+        final int coordinatesOffset = buffer.getInt(entry + 8);
+        final int coordinateCount   = buffer.getInt(entry + 12);
+        if (0 == commandCount) { return SvgGeometry.EMPTY; }
+
+        final ByteBuffer commands = buffer.duplicate();
+        commands.position(commandsOffset).limit(commandsOffset + commandCount);
+        final ByteBuffer coordinates = buffer.duplicate();
+        coordinates.position(coordinatesOffset).limit(coordinatesOffset + coordinateCount * Double.BYTES);
+        final DoubleBuffer coordinateBuffer = coordinates.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        return new SvgGeometry(commands.slice(), coordinateBuffer,
+                               buffer.getDouble(entry + 32), buffer.getDouble(entry + 40), buffer.getDouble(entry + 48), buffer.getDouble(entry + 56));
+    }
+
+    /**
+     * Creates the SvgPaths of the given icon. The paths share their geometry
+     * with the mapped file and can be added to an SvgNode directly.
+     */
+    public List<SvgPath> createShapes(final int icon) {
+        final int           shapeCount = getShapeCount(icon);
+        final List<SvgPath> shapes     = new ArrayList<>(shapeCount);
+        for (int shape = 0 ; shape < shapeCount ; shape++) {
+            final int     entry   = shapeEntry(icon, shape);
+            final int     flags   = buffer.get(entry + 31);
+            final Color   fill    = 0 == (flags & FLAG_NO_FILL)   ? Helper.fromArgb(buffer.getInt(entry + 16)) : null;
+            final Color   stroke  = 0 == (flags & FLAG_NO_STROKE) ? Helper.fromArgb(buffer.getInt(entry + 20)) : null;
+            final SvgPath svgPath = new SvgPath(null, fill, stroke, buffer.getFloat(entry + 24), FillRule.values()[buffer.get(entry + 28)], null,
+                                                0 != (flags & FLAG_VISIBLE));
+            svgPath.setLineJoin(StrokeLineJoin.values()[buffer.get(entry + 29)]);
+            svgPath.setLineCap(StrokeLineCap.values()[buffer.get(entry + 30)]);
+            svgPath.setGeometry(getGeometry(icon, shape));
+            shapes.add(svgPath);
+        }
+        return shapes;
+    }
+    public List<SvgPath> createShapes(final String name) {
+        final int icon = indexOf(name);
+        if (icon < 0) { throw new IllegalArgumentException("No icon named " + name); }
+        return createShapes(icon);
+    }
+
+    private int iconEntry(final int icon) {
+        if (icon < 0 || icon >= iconCount) { throw new IndexOutOfBoundsException("icon " + icon); }
+        return iconTableOffset + icon * ICON_ENTRY_SIZE;
+    }
+
+    private int shapeEntry(final int icon, final int shape) {
+        final int entry = iconEntry(icon);
+        if (shape < 0 || shape >= buffer.getInt(entry + 12)) { throw new IndexOutOfBoundsException("shape " + shape); }
+        return shapeTableOffset + (buffer.getInt(entry + 8) + shape) * SHAPE_ENTRY_SIZE;
+    }
+}
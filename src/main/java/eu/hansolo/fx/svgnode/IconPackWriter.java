@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Writes compiled SvgPaths into the binary icon pack format that can be
+ * memory mapped by IconPack. Only solid colors are supported as fill and
+ * stroke, effects are not stored.
+ */
+public final class IconPackWriter {
+    private final Map<String, List<SvgPath>> icons;
+
+
+    // ******************** Constructors **************************************
+    public IconPackWriter() {
+        icons = new LinkedHashMap<>();
+    }
+
+
+    // ******************** Methods *******************************************
+    public IconPackWriter add(final String name, final SvgPath... shapes) {
+        return add(name, Arrays.asList(shapes));
+    }
+    public IconPackWriter add(final String name, final List<SvgPath> shapes) {
+        for (SvgPath svgPath : shapes) {
+            checkPaint(svgPath.getFill());
+            checkPaint(svgPath.getStroke());
+        }
+        icons.put(name, new ArrayList<>(shapes));
+        return this;
+    }
+
+    public void write(final Path file) throws IOException {
+        final List<byte[]> names       = new ArrayList<>(icons.size());
+        int                namesSize   = 0;
+        int                shapeCount  = 0;
+        long               commands    = 0;
+        long               coordinates = 0;
+        for (Map.Entry<String, List<SvgPath>> icon : icons.entrySet()) {
+            final byte[] name = icon.getKey().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            namesSize  += name.length;
+            shapeCount += icon.getValue().size();
+            for (SvgPath svgPath : icon.getValue()) {
+                commands    += svgPath.getGeometry().getCommandCount();
+                coordinates += svgPath.getGeometry().getCoordinateCount();
+            }
+        }
+
+        final long iconTableOffset   = IconPack.HEADER_SIZE;
+        final long shapeTableOffset  = iconTableOffset + (long) icons.size() * IconPack.ICON_ENTRY_SIZE;
+        final long namesOffset       = shapeTableOffset + (long) shapeCount * IconPack.SHAPE_ENTRY_SIZE;
+        final long commandsOffset    = namesOffset + namesSize;
+        final long coordinatesOffset = (commandsOffset + commands + 7) & ~7L;
+        final long size              = coordinatesOffset + coordinates * Double.BYTES;
+        if (size > Integer.MAX_VALUE) { throw new IOException("Icon pack exceeds 2 GB"); }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, IconPack.MAGIC);
+            buffer.putShort(4, IconPack.VERSION);
+            buffer.putShort(6, (short) 0);
+            buffer.putInt(8, icons.size());
+            buffer.putInt(12, shapeCount);
+            buffer.putInt(16, (int) iconTableOffset);
+            buffer.putInt(20, (int) shapeTableOffset);
+            buffer.putInt(24, (int) namesOffset);
+            buffer.putInt(28, 0);
+
+            int iconEntry        = (int) iconTableOffset;
+            int shapeEntry       = (int) shapeTableOffset;
+            int nameOffset       = 0;
+            int commandOffset    = (int) commandsOffset;
+            int coordinateOffset = (int) coordinatesOffset;
+            int firstShape       = 0;
+            int iconIndex        = 0;
+            for (List<SvgPath> shapes : icons.values()) {
+                final byte[] name = names.get(iconIndex++);
+                buffer.putInt(iconEntry, nameOffset);
+                buffer.putInt(iconEntry + 4, name.length);
+                buffer.putInt(iconEntry + 8, firstShape);
+                buffer.putInt(iconEntry + 12, shapes.size());
+                for (int i = 0 ; i < name.length ; i++) { buffer.put((int) namesOffset + nameOffset + i, name[i]); }
+                iconEntry  += IconPack.ICON_ENTRY_SIZE;
+                nameOffset += name.length;
+                firstShape += shapes.size();
+
+                for (SvgPath svgPath : shapes) {
+                    final SvgGeometry geometry = svgPath.getGeometry();
+                    buffer.putInt(shapeEntry, commandOffset);
+                    buffer.putInt(shapeEntry + 4, geometry.getCommandCount());
+                    buffer.putInt(shapeEntry + 8, coordinateOffset);
+                    buffer.putInt(shapeEntry + 12, geometry.getCoordinateCount());
+                    buffer.putInt(shapeEntry + 16, Helper.toArgb((Color) svgPath.getFill()));
+                    buffer.putInt(shapeEntry + 20, Helper.toArgb((Color) svgPath.getStroke()));
+                    buffer.putFloat(shapeEntry + 24, (float) svgPath.getStrokeWidth());
+                    buffer.put(shapeEntry + 28, (byte) svgPath.getFillRule().ordinal());
+                    buffer.put(shapeEntry + 29, (byte) svgPath.getLineJoin().ordinal());
+                    buffer.put(shapeEntry + 30, (byte) svgPath.getLineCap().ordinal());
+                    buffer.put(shapeEntry + 31, (byte) ((svgPath.isVisible()      ? IconPack.FLAG_VISIBLE   : 0) |
+                                                        (null == svgPath.getFill()   ? IconPack.FLAG_NO_FILL   : 0) |
+                                                        (null == svgPath.getStroke() ? IconPack.FLAG_NO_STROKE : 0)));
+                    buffer.putDouble(shapeEntry + 32, geometry.getMinX());
+                    buffer.putDouble(shapeEntry + 40, geometry.getMinY());
+                    buffer.putDouble(shapeEntry + 48, geometry.getMaxX());
+                    buffer.putDouble(shapeEntry + 56, geometry.getMaxY());
+                    shapeEntry += IconPack.SHAPE_ENTRY_SIZE;
+
+                    for (int i = 0, n = geometry.getCommandCount() ; i < n ; i++) { buffer.put(commandOffset++, geometry.getCommand(i)); }
+                    for (int i = 0, n = geometry.getCoordinateCount() ; i < n ; i++) {
+                        buffer.putDouble(coordinateOffset, geometry.getCoordinate(i));
+                        coordinateOffset += Double.BYTES;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkPaint(final Paint paint) {
+        if (null != paint && !(paint instanceof Color)) { throw new IllegalArgumentException("Only colors are supported in icon packs but got " + paint); }
+    }
+}
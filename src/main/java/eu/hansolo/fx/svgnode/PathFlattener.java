@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+
+/**
+ * Converts the curves of an SvgGeometry into line segments. The geometry
+ * is transformed by a scale and a translation first, the tolerance is the
+ * maximum distance between a curve and its segments in the transformed
+ * coordinate system. The number of segments per curve is derived from
+ * the second differences of the control points (Wang's formula), so no
+ * recursion is needed.
+ */
+final class PathFlattener {
+
+    /**
+     * Receives the flattened path. Every subpath starts with a moveTo and
+     * ends with either a closePath or the next moveTo.
+     */
+    interface Sink {
+        void moveTo(double x, double y);
+
+        void lineTo(double x, double y);
+
+        void closePath();
+    }
+
+
+    // ******************** Constructors **************************************
+    private PathFlattener() {}
+
+
+    // ******************** Methods *******************************************
+    static void flatten(final SvgGeometry geometry, final double tolerance, final Sink sink) {
+        flatten(geometry, 1, 1, 0, 0, tolerance, sink);
+    }
+    static void flatten(final SvgGeometry geometry, final double scaleX, final double scaleY, final double translateX, final double translateY,
+                        final double tolerance, final Sink sink) {
+        double  x      = translateX;
+        double  y      = translateY;
+        double  startX = x;
+        double  startY = y;
+        boolean open   = false;
+        int     i      = 0;
+        for (int j = 0, n = geometry.getCommandCount() ; j < n ; j++) {
+            final byte command = geometry.getCommand(j);
+            if (SvgGeometry.CLOSE == command) {
+                if (open) { sink.closePath(); }
+                x    = startX;
+                y    = startY;
+                open = false;
+                continue;
+            }
+            if (SvgGeometry.MOVE_TO == command) {
+                x      = startX = geometry.getCoordinate(i) * scaleX + translateX;
+                y      = startY = geometry.getCoordinate(i + 1) * scaleY + translateY;
+                i     += 2;
+                open   = true;
+                sink.moveTo(x, y);
+                continue;
+            }
+            if (!open) {
+                // Drawing commands after a close start a new subpath at the start of the last one
+                startX = x;
+                startY = y;
+                open   = true;
+                sink.moveTo(x, y);
+            }
+            switch (command) {
+                case SvgGeometry.LINE_TO: {
+                    x  = geometry.getCoordinate(i) * scaleX + translateX;
+                    y  = geometry.getCoordinate(i + 1) * scaleY + translateY;
+                    i += 2;
+                    sink.lineTo(x, y);
+                    break;
+                }
+                case SvgGeometry.QUAD_TO: {
+                    final double x1 = geometry.getCoordinate(i)     * scaleX + translateX;
+                    final double y1 = geometry.getCoordinate(i + 1) * scaleY + translateY;
+                    final double x2 = geometry.getCoordinate(i + 2) * scaleX + translateX;
+                    final double y2 = geometry.getCoordinate(i + 3) * scaleY + translateY;
+                    i += 4;
+                    final int steps = segments(0.25 * Math.hypot(x - 2 * x1 + x2, y - 2 * y1 + y2), tolerance);
+                    for (int s = 1 ; s < steps ; s++) {
+                        final double t  = (double) s / steps;
+                        final double mt = 1 - t;
+                        sink.lineTo(mt * mt * x + 2 * mt * t * x1 + t * t * x2, mt * mt * y + 2 * mt * t * y1 + t * t * y2);
+                    }
+                    sink.lineTo(x2, y2);
+                    x = x2;
+                    y = y2;
+                    break;
+                }
+                case SvgGeometry.CUBIC_TO: {
+                    final double x1 = geometry.getCoordinate(i)     * scaleX + translateX;
+                    final double y1 = geometry.getCoordinate(i + 1) * scaleY + translateY;
+                    final double x2 = geometry.getCoordinate(i + 2) * scaleX + translateX;
+                    final double y2 = geometry.getCoordinate(i + 3) * scaleY + translateY;
+                    final double x3 = geometry.getCoordinate(i + 4) * scaleX + translateX;
+                    final double y3 = geometry.getCoordinate(i + 5) * scaleY + translateY;
+                    i += 6;
+                    final double dd    = Math.max(Math.hypot(x - 2 * x1 + x2, y - 2 * y1 + y2), Math.hypot(x1 - 2 * x2 + x3, y1 - 2 * y2 + y3));
+                    final int    steps = segments(0.75 * dd, tolerance);
+                    for (int s = 1 ; s < steps ; s++) {
+                        final double t  = (double) s / steps;
+                        final double mt = 1 - t;
+                        final double a  = mt * mt * mt;
+                        final double b  = 3 * mt * mt * t;
+                        final double c  = 3 * mt * t * t;
+                        final double d  = t * t * t;
+                        sink.lineTo(a * x + b * x1 + c * x2 + d * x3, a * y + b * y1 + c * y2 + d * y3);
+                    }
+                    sink.lineTo(x3, y3);
+                    x = x3;
+                    y = y3;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of segments that keeps the flattening error, which
+     * is the given value divided by the square of the number of segments,
+     * below the tolerance.
+     */
+    private static int segments(final double value, final double tolerance) {
+        if (!(value > tolerance)) { return 1; }
+        return (int) Math.min(1024, Math.ceil(Math.sqrt(value / tolerance)));
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.util.Arrays;
+
+
+/**
+ * Converts the flattened subpaths into polygons that cover the stroke.
+ * Every segment, join and cap becomes a polygon of its own and all of
+ * them are emitted with the same orientation, so that filling them with
+ * the non zero rule results in their union.
+ */
+final class PathStroker implements PathFlattener.Sink {
+    static  final double             MITER_LIMIT = 10;
+    private final double             halfWidth;
+    private final StrokeLineJoin     lineJoin;
+    private final StrokeLineCap      lineCap;
+    private final int                circleSegments;
+    private final PathFlattener.Sink out;
+    private       double[]           points;
+    private       int                count;
+    private final double[]           polygon;
+
+
+    // ******************** Constructors **************************************
+    PathStroker(final double halfWidth, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap, final double tolerance, final PathFlattener.Sink out) {
+        this.halfWidth      = halfWidth;
+        this.lineJoin       = lineJoin;
+        this.lineCap        = lineCap;
+        this.out            = out;
+        this.points         = new double[64];
+        this.circleSegments = halfWidth > tolerance ? (int) Helper.clamp(8, 256, Math.ceil(Math.PI / Math.acos(1 - tolerance / halfWidth))) : 8;
+        this.polygon        = new double[Math.max(8, circleSegments * 2)];
+    }
+
+
+    // ******************** Methods *******************************************
+    @Override public void moveTo(final double x, final double y) {
+        finish(false);
+        add(x, y);
+    }
+
+    @Override public void lineTo(final double x, final double y) { add(x, y); }
+
+    @Override public void closePath() { finish(true); }
+
+    void finish(final boolean closed) {
+        int n = count;
+        count = 0;
+        if (n == 0) { return; }
+        // A closed subpath that ends at its start has no closing segment
+        if (closed && n > 1 && points[0] == points[2 * n - 2] && points[1] == points[2 * n - 1]) { n--; }
+        if (n == 1) {
+            // Zero length subpath, only caps are drawn
+            if (StrokeLineCap.ROUND == lineCap) {
+                circle(points[0], points[1]);
+            } else if (StrokeLineCap.SQUARE == lineCap) {
+                final double x = points[0];
+                final double y = points[1];
+                emit(x - halfWidth, y - halfWidth, x + halfWidth, y - halfWidth, x + halfWidth, y + halfWidth, x - halfWidth, y + halfWidth);
+            }
+            return;
+        }
+        final boolean closeLoop = closed && n > 2;
+        final int     segments  = closeLoop ? n : n - 1;
+        for (int s = 0 ; s < segments ; s++) {
+            final int i0 = s;
+            final int i1 = (s + 1) % n;
+            segment(points[2 * i0], points[2 * i0 + 1], points[2 * i1], points[2 * i1 + 1]);
+        }
+        if (closeLoop) {
+            for (int i = 0 ; i < n ; i++) { join((i + n - 1) % n, i, (i + 1) % n); }
+        } else {
+            for (int i = 1 ; i < n - 1 ; i++) { join(i - 1, i, i + 1); }
+            cap(2, 0);
+            cap(2 * (n - 2), 2 * (n - 1));
+        }
+    }
+
+    private void add(final double x, final double y) {
+        // Skip repeated points, they have no direction
+        if (count > 0 && points[2 * count - 2] == x && points[2 * count - 1] == y) { return; }
+        if (2 * count + 2 > points.length) { points = Arrays.copyOf(points, points.length * 2); }
+        points[2 * count]     = x;
+        points[2 * count + 1] = y;
+        count++;
+    }
+
+    private void segment(final double x0, final double y0, final double x1, final double y1) {
+        final double length = Math.hypot(x1 - x0, y1 - y0);
+        final double nx     = -(y1 - y0) / length * halfWidth;
+        final double ny     = (x1 - x0) / length * halfWidth;
+        emit(x0 + nx, y0 + ny, x1 + nx, y1 + ny, x1 - nx, y1 - ny, x0 - nx, y0 - ny);
+    }
+
+    private void join(final int previous, final int current, final int next) {
+        final double x  = points[2 * current];
+        final double y  = points[2 * current + 1];
+        final double d0 = Math.hypot(x - points[2 * previous], y - points[2 * previous + 1]);
+        final double d1 = Math.hypot(points[2 * next] - x, points[2 * next + 1] - y);
+        final double dx0 = (x - points[2 * previous]) / d0;
+        final double dy0 = (y - points[2 * previous + 1]) / d0;
+        final double dx1 = (points[2 * next] - x) / d1;
+        final double dy1 = (points[2 * next + 1] - y) / d1;
+        final double cross = dx0 * dy1 - dy0 * dx1;
+        if (Math.abs(cross) < 1e-9 && dx0 * dx1 + dy0 * dy1 > 0) { return; }
+
+        if (StrokeLineJoin.ROUND == lineJoin) {
+            circle(x, y);
+            return;
+        }
+        // Offsets on the outer side of the turn
+        final double side = cross > 0 ? -halfWidth : halfWidth;
+        final double ax   = x - dy0 * side;
+        final double ay   = y + dx0 * side;
+        final double bx   = x - dy1 * side;
+        final double by   = y + dx1 * side;
+        if (StrokeLineJoin.MITER == lineJoin) {
+            final double mx     = -dy0 - dy1;
+            final double my     = dx0 + dx1;
+            final double mm     = mx * mx + my * my;
+            // The ratio between the miter length and the stroke width is 2 / |n0 + n1|
+            if (mm > 0 && 4 / mm <= MITER_LIMIT * MITER_LIMIT) {
+                final double f = 2 * side / mm;
+                emit(x, y, ax, ay, x + mx * f, y + my * f, bx, by);
+                return;
+            }
+        }
+        emit(x, y, ax, ay, bx, by);
+    }
+
+    /**
+     * Adds the cap at the end point e of the segment from point s to e.
+     */
+    private void cap(final int s, final int e) {
+        final double x = points[e];
+        final double y = points[e + 1];
+        switch (lineCap) {
+            case ROUND:
+                circle(x, y);
+                break;
+            case SQUARE:
+                final double length = Math.hypot(x - points[s], y - points[s + 1]);
+                final double dx     = (x - points[s]) / length * halfWidth;
+                final double dy     = (y - points[s + 1]) / length * halfWidth;
+                emit(x - dy, y + dx, x + dx - dy, y + dy + dx, x + dx + dy, y + dy - dx, x + dy, y - dx);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void circle(final double x, final double y) {
+        for (int i = 0 ; i < circleSegments ; i++) {
+            final double angle = 2 * Math.PI * i / circleSegments;
+            polygon[2 * i]     = x + Math.cos(angle) * halfWidth;
+            polygon[2 * i + 1] = y + Math.sin(angle) * halfWidth;
+        }
+        emitPolygon(polygon, circleSegments);
+    }
+
+    private void emit(final double... coordinates) { emitPolygon(coordinates, coordinates.length / 2); }
+
+    private void emitPolygon(final double[] coordinates, final int n) {
+        double area = 0;
+        for (int i = 0 ; i < n ; i++) {
+            final int j = (i + 1) % n;
+            area += coordinates[2 * i] * coordinates[2 * j + 1] - coordinates[2 * j] * coordinates[2 * i + 1];
+        }
+        if (0 == area) { return; }
+        if (area > 0) {
+            out.moveTo(coordinates[0], coordinates[1]);
+            for (int i = 1 ; i < n ; i++) { out.lineTo(coordinates[2 * i], coordinates[2 * i + 1]); }
+        } else {
+            out.moveTo(coordinates[2 * n - 2], coordinates[2 * n - 1]);
+            for (int i = n - 2 ; i >= 0 ; i--) { out.lineTo(coordinates[2 * i], coordinates[2 * i + 1]); }
+        }
+        out.closePath();
+    }
+}
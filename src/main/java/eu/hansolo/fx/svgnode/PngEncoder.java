@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+
+/**
+ * Minimal PNG encoder for non premultiplied ARGB pixels, e.g. of an
+ * SvgRasterizer. The image is written as 8 bit RGBA and the filter of
+ * each row is chosen by the minimum sum of absolute differences.
+ */
+public final class PngEncoder {
+    public  static final int    DEFAULT_COMPRESSION = 6;
+    private static final byte[] SIGNATURE           = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+    private static final int    FILTER_COUNT        = 5;
+
+
+    // ******************** Constructors **************************************
+    private PngEncoder() {}
+
+
+    // ******************** Methods *******************************************
+    public static byte[] encode(final int[] pixels, final int width, final int height) throws IOException {
+        return encode(pixels, width, height, DEFAULT_COMPRESSION);
+    }
+    public static byte[] encode(final int[] pixels, final int width, final int height, final int compressionLevel) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(width * height + 1024);
+        write(pixels, width, height, compressionLevel, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the given pixels as PNG to the given stream.
+     * @param pixels           non premultiplied ARGB pixels in rows from top to bottom
+     * @param width            the width of the image
+     * @param height           the height of the image
+     * @param compressionLevel the deflate level from 0 (none) to 9 (best)
+     * @param out              the stream to write to, it will not be closed
+     */
+    public static void write(final int[] pixels, final int width, final int height, final int compressionLevel, final OutputStream out) throws IOException {
+        if (width <= 0 || height <= 0) { throw new IllegalArgumentException("Size must be positive"); }
+        if (pixels.length < width * height) { throw new IllegalArgumentException("Pixel array too small"); }
+        out.write(SIGNATURE);
+
+        final byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8]  = 8; // bit depth
+        header[9]  = 6; // RGBA
+        header[10] = 0; // deflate
+        header[11] = 0; // adaptive filtering
+        header[12] = 0; // no interlace
+        writeChunk(out, "IHDR", header, header.length);
+
+        final int                   stride     = width * 4;
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(stride * height / 4 + 64);
+        final Deflater              deflater   = new Deflater(compressionLevel);
+        try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compressed, deflater, 64 * 1024)) {
+            byte[]         previous = new byte[stride];
+            byte[]         current  = new byte[stride];
+            final byte[][] filtered = new byte[FILTER_COUNT][stride + 1];
+            for (int y = 0 ; y < height ; y++) {
+                for (int x = 0, i = y * width ; x < width ; x++, i++) {
+                    final int argb = pixels[i];
+                    current[4 * x]     = (byte) (argb >> 16);
+                    current[4 * x + 1] = (byte) (argb >> 8);
+                    current[4 * x + 2] = (byte) argb;
+                    current[4 * x + 3] = (byte) (argb >>> 24);
+                }
+                deflaterStream.write(filtered[filter(current, previous, filtered)]);
+                final byte[] swap = previous;
+                previous = current;
+                current  = swap;
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(out, "IDAT", compressed.toByteArray(), compressed.size());
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    /**
+     * Filters the given row with all filters and returns the index of the
+     * one with the smallest sum of absolute values.
+     */
+    private static int filter(final byte[] row, final byte[] previous, final byte[][] filtered) {
+        final int[] sums = new int[FILTER_COUNT];
+        for (int f = 0 ; f < FILTER_COUNT ; f++) { filtered[f][0] = (byte) f; }
+        for (int i = 0 ; i < row.length ; i++) {
+            final int a = i >= 4 ? row[i - 4] & 0xFF : 0;
+            final int b = previous[i] & 0xFF;
+            final int c = i >= 4 ? previous[i - 4] & 0xFF : 0;
+            final int x = row[i] & 0xFF;
+            final byte none    = (byte) x;
+            final byte sub     = (byte) (x - a);
+            final byte up      = (byte) (x - b);
+            final byte average = (byte) (x - ((a + b) >> 1));
+            final byte paeth   = (byte) (x - paeth(a, b, c));
+            filtered[0][i + 1] = none;
+            filtered[1][i + 1] = sub;
+            filtered[2][i + 1] = up;
+            filtered[3][i + 1] = average;
+            filtered[4][i + 1] = paeth;
+            sums[0] += Math.abs(none);
+            sums[1] += Math.abs(sub);
+            sums[2] += Math.abs(up);
+            sums[3] += Math.abs(average);
+            sums[4] += Math.abs(paeth);
+        }
+        int best = 0;
+        for (int f = 1 ; f < FILTER_COUNT ; f++) {
+            if (sums[f] < sums[best]) { best = f; }
+        }
+        return best;
+    }
+
+    private static int paeth(final int a, final int b, final int c) {
+        final int p  = a + b - c;
+        final int pa = Math.abs(p - a);
+        final int pb = Math.abs(p - b);
+        final int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) { return a; }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeChunk(final OutputStream out, final String type, final byte[] data, final int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final byte[] buffer    = new byte[4];
+        putInt(buffer, 0, length);
+        out.write(buffer);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        putInt(buffer, 0, (int) crc.getValue());
+        out.write(buffer);
+    }
+
+    private static void putInt(final byte[] buffer, final int offset, final int value) {
+        buffer[offset]     = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.image.WritableImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Least recently used cache for the rendered images of SvgPaths.
+ * The size of the cache is limited by the number of bytes of all
+ * images (4 bytes per pixel). The cache is only accessed from the
+ * JavaFX application thread and therefore not synchronized.
+ */
+public final class RasterCache {
+    public  static final long                  DEFAULT_BUDGET = 32 * 1024 * 1024;
+    private        final Map<SvgPath, Entry>   entries;
+    private              long                  budget;
+    private              long                  usedBytes;
+    private              long                  hits;
+    private              long                  misses;
+    private              long                  evictions;
+
+
+    // ******************** Constructors **************************************
+    RasterCache() {
+        this(DEFAULT_BUDGET);
+    }
+    RasterCache(final long budget) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.budget  = Math.max(0, budget);
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the cached image of the given path if it was rendered with the
+     * given scale, otherwise null.
+     */
+    WritableImage get(final SvgPath svgPath, final double scaleX, final double scaleY) {
+        final Entry entry = entries.get(svgPath);
+        if (null != entry && entry.scaleX == scaleX && entry.scaleY == scaleY) {
+            hits++;
+            return entry.image;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Adds the given image to the cache and evicts the least recently used
+     * images until the cache fits into its budget again.
+     * @return false if the image is too large to be cached at all
+     */
+    boolean put(final SvgPath svgPath, final WritableImage image, final double scaleX, final double scaleY) {
+        final long bytes = getBytes(image);
+        if (bytes > budget) { return false; }
+        invalidate(svgPath);
+        entries.put(svgPath, new Entry(image, scaleX, scaleY, bytes));
+        usedBytes += bytes;
+        trim();
+        return true;
+    }
+
+    boolean fits(final double width, final double height) { return width * height * 4 <= budget; }
+
+    void invalidate(final SvgPath svgPath) {
+        final Entry entry = entries.remove(svgPath);
+        if (null != entry) { usedBytes -= entry.bytes; }
+    }
+
+    public void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public long getBudget() { return budget; }
+    public void setBudget(final long budget) {
+        this.budget = Math.max(0, budget);
+        trim();
+    }
+
+    public long getUsedBytes() { return usedBytes; }
+
+    public int getSize() { return entries.size(); }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public long getEvictions() { return evictions; }
+
+    public double getHitRate() {
+        final long requests = hits + misses;
+        return 0 == requests ? 0 : (double) hits / requests;
+    }
+
+    public void resetStatistics() {
+        hits      = 0;
+        misses    = 0;
+        evictions = 0;
+    }
+
+    private void trim() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (usedBytes > budget && iterator.hasNext()) {
+            usedBytes -= iterator.next().bytes;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static long getBytes(final WritableImage image) { return (long) image.getWidth() * (long) image.getHeight() * 4; }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"size\":").append(getSize()).append(",")
+                                  .append("\"used_bytes\":").append(usedBytes).append(",")
+                                  .append("\"budget\":").append(budget).append(",")
+                                  .append("\"hits\":").append(hits).append(",")
+                                  .append("\"misses\":").append(misses).append(",")
+                                  .append("\"evictions\":").append(evictions)
+                                  .append("}")
+                                  .toString();
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Entry {
+        final WritableImage image;
+        final double        scaleX;
+        final double        scaleY;
+        final long          bytes;
+
+
+        Entry(final WritableImage image, final double scaleX, final double scaleY, final long bytes) {
+            this.image  = image;
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            this.bytes  = bytes;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * JDK Flight Recorder events of the SvgNode. The events only cost a check
+ * of a flag when no recording is running. The per shape events are
+ * disabled by default and have to be enabled in the recording settings,
+ * e.g. with eu.hansolo.fx.svgnode.ShapeDraw#enabled=true.
+ */
+final class RenderEvents {
+
+    // ******************** Constructors **************************************
+    private RenderEvents() {}
+
+
+    // ******************** Inner Classes *************************************
+    @Name("eu.hansolo.fx.svgnode.Redraw")
+    @Label("SvgNode Redraw")
+    @Category({ "JavaFX", "SvgNode" })
+    @Description("Redraw of the dirty layers of an SvgNode")
+    @StackTrace(false)
+    static class RedrawEvent extends Event {
+        @Label("Causes")
+        String  causes;
+        @Label("Shapes Drawn")
+        int     shapesDrawn;
+        @Label("Shapes Skipped")
+        @Description("Shapes that were not drawn because they are invisible, outside of the viewport or outside of the dirty area")
+        int     shapesSkipped;
+        @Label("Layers")
+        int     layers;
+        @Label("Full Redraw")
+        boolean fullRedraw;
+    }
+
+    @Name("eu.hansolo.fx.svgnode.ShapeDraw")
+    @Label("SvgPath Draw")
+    @Category({ "JavaFX", "SvgNode" })
+    @Description("Drawing of a single SvgPath")
+    @StackTrace(false)
+    @Enabled(false)
+    @Threshold("0 ms")
+    static class ShapeDrawEvent extends Event {
+        @Label("Layer")
+        int     layer;
+        @Label("Commands")
+        int     commands;
+        @Label("Cached")
+        @Description("Drawn from the raster cache")
+        boolean cached;
+    }
+
+    @Name("eu.hansolo.fx.svgnode.Parse")
+    @Label("SVG Path Parse")
+    @Category({ "JavaFX", "SvgNode" })
+    @Description("Compilation of an SVG path string that was not in the GeometryCache")
+    @StackTrace(false)
+    static class ParseEvent extends Event {
+        @Label("Path Length")
+        int pathLength;
+        @Label("Commands")
+        int commands;
+        @Label("Coordinates")
+        int coordinates;
+    }
+}
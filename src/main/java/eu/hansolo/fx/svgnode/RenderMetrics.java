@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+
+/**
+ * Counters and timings of the redraws of an SvgNode. The redraw counters
+ * and times are always collected, the draw times of the single shapes only
+ * if shape timing is enabled because they need two timestamps per shape.
+ * The parse times are collected process wide by the GeometryCache. All
+ * methods have to be called on the JavaFX application thread.
+ */
+public final class RenderMetrics {
+    public enum Cause { RESIZE, LIST_CHANGE, DIRTY_SHAPE, VIEWPORT, SETTINGS }
+
+    private static final Cause[] CAUSES = Cause.values();
+    private final        long[]  redrawsByCause;
+    private              long    redraws;
+    private              long    redrawNanos;
+    private              long    maxRedrawNanos;
+    private              long    shapesDrawn;
+    private              long    shapesSkipped;
+    private              long    timedShapes;
+    private              long    shapeDrawNanos;
+    private              long    maxShapeDrawNanos;
+    private              long    effectRenders;
+    private              long    effectRendersAvoided;
+    private              boolean shapeTimingEnabled;
+
+
+    // ******************** Constructors **************************************
+    RenderMetrics() {
+        redrawsByCause = new long[CAUSES.length];
+    }
+
+
+    // ******************** Methods *******************************************
+    public long getRedrawCount() { return redraws; }
+    /**
+     * Returns the number of redraws that were caused by the given cause. A
+     * redraw can have several causes, e.g. when shapes were added and other
+     * shapes changed in the same pulse.
+     */
+    public long getRedrawCount(final Cause cause) { return redrawsByCause[cause.ordinal()]; }
+
+    public long getShapesDrawn() { return shapesDrawn; }
+
+    /**
+     * Returns the number of shapes that were not drawn in the redraws because
+     * they are invisible, outside of the viewport or outside of the area
+     * that had to be repainted.
+     */
+    public long getShapesSkipped() { return shapesSkipped; }
+
+    public double getTotalRedrawMillis() { return redrawNanos / 1e6; }
+
+    public double getAverageRedrawMillis() { return 0 == redraws ? 0 : redrawNanos / 1e6 / redraws; }
+
+    public double getMaxRedrawMillis() { return maxRedrawNanos / 1e6; }
+
+    /**
+     * If enabled, the time to draw each shape is measured. The draw times are
+     * also measured while a flight recording with the ShapeDraw event is
+     * running but are only added to these metrics if shape timing is enabled.
+     */
+    public boolean isShapeTimingEnabled() { return shapeTimingEnabled; }
+    public void setShapeTimingEnabled(final boolean shapeTimingEnabled) { this.shapeTimingEnabled = shapeTimingEnabled; }
+
+    public long getTimedShapeCount() { return timedShapes; }
+
+    public double getAverageShapeDrawMicros() { return 0 == timedShapes ? 0 : shapeDrawNanos / 1e3 / timedShapes; }
+
+    public double getMaxShapeDrawMicros() { return maxShapeDrawNanos / 1e3; }
+
+    /**
+     * Returns the number of times an effect was rendered into the effect
+     * cache of the node.
+     */
+    public long getEffectRenders() { return effectRenders; }
+
+    /**
+     * Returns the number of times a shape with an effect was drawn from the
+     * effect cache instead of computing the effect again.
+     */
+    public long getEffectRendersAvoided() { return effectRendersAvoided; }
+
+    public void reset() {
+        Arrays.fill(redrawsByCause, 0);
+        redraws              = 0;
+        redrawNanos          = 0;
+        maxRedrawNanos       = 0;
+        shapesDrawn          = 0;
+        shapesSkipped        = 0;
+        timedShapes          = 0;
+        shapeDrawNanos       = 0;
+        maxShapeDrawNanos    = 0;
+        effectRenders        = 0;
+        effectRendersAvoided = 0;
+    }
+
+    void recordRedraw(final int causes, final int drawn, final int skipped, final long nanos) {
+        redraws++;
+        for (Cause cause : CAUSES) {
+            if ((causes & mask(cause)) != 0) { redrawsByCause[cause.ordinal()]++; }
+        }
+        shapesDrawn    += drawn;
+        shapesSkipped  += skipped;
+        redrawNanos    += nanos;
+        maxRedrawNanos  = Math.max(maxRedrawNanos, nanos);
+    }
+
+    void recordShape(final long nanos) {
+        timedShapes++;
+        shapeDrawNanos    += nanos;
+        maxShapeDrawNanos  = Math.max(maxShapeDrawNanos, nanos);
+    }
+
+    void recordEffectRender(final boolean avoided) {
+        if (avoided) {
+            effectRendersAvoided++;
+        } else {
+            effectRenders++;
+        }
+    }
+
+    static int mask(final Cause cause) { return 1 << cause.ordinal(); }
+
+    static String toString(final int causes) {
+        final StringBuilder text = new StringBuilder();
+        for (Cause cause : CAUSES) {
+            if ((causes & mask(cause)) == 0) { continue; }
+            if (text.length() > 0) { text.append(","); }
+            text.append(cause.name());
+        }
+        return text.toString();
+    }
+
+    @Override public String toString() {
+        final StringBuilder text = new StringBuilder().append("{")
+                                                      .append("\"redraws\":").append(redraws).append(",");
+        for (Cause cause : CAUSES) {
+            text.append("\"redraws_").append(cause.name().toLowerCase(Locale.ROOT)).append("\":").append(redrawsByCause[cause.ordinal()]).append(",");
+        }
+        return text.append("\"shapes_drawn\":").append(shapesDrawn).append(",")
+                   .append("\"shapes_skipped\":").append(shapesSkipped).append(",")
+                   .append("\"average_redraw_ms\":").append(getAverageRedrawMillis()).append(",")
+                   .append("\"max_redraw_ms\":").append(getMaxRedrawMillis()).append(",")
+                   .append("\"average_shape_draw_us\":").append(getAverageShapeDrawMicros()).append(",")
+                   .append("\"max_shape_draw_us\":").append(getMaxShapeDrawMicros()).append(",")
+                   .append("\"effect_renders\":").append(effectRenders).append(",")
+                   .append("\"effect_renders_avoided\":").append(effectRendersAvoided)
+                   .append("}")
+                   .toString();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.geometry.Bounds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Uniform grid over the bounds of the shapes of an SvgNode. Each shape is
+ * registered in all cells its bounds overlap, shapes that would cover too
+ * many cells (e.g. because of an effect with unknown extent) are kept in
+ * a separate list that is checked by every query. The grid is hashed, so
+ * shapes may lie anywhere.
+ * Queries return the shapes in the order of the list they are drawn from.
+ * A shape that is in the list more than once has one entry that counts
+ * its occurrences and is returned once per occurrence.
+ */
+final class SpatialIndex<T> {
+            static final double                    DEFAULT_CELL_SIZE = 64;
+    private static final int                       MAX_CELLS         = 1024;
+    private        final double                    cellSize;
+    private        final Map<T, Entry<T>>          entries;
+    private        final Map<Long, List<Entry<T>>> cells;
+    private        final List<Entry<T>>            oversized;
+    private              int                       nextOrder;
+    private              boolean                   orderValid;
+    private              int                       stamp;
+
+
+    // ******************** Constructors **************************************
+    SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+    SpatialIndex(final double cellSize) {
+        this.cellSize   = cellSize;
+        this.entries    = new IdentityHashMap<>();
+        this.cells      = new HashMap<>();
+        this.oversized  = new ArrayList<>();
+        this.orderValid = true;
+    }
+
+
+    // ******************** Methods *******************************************
+    int size() { return entries.size(); }
+
+    /**
+     * Adds the given shape behind all shapes that are in the index. If it
+     * has not been added to the end of the list of shapes, invalidateOrder()
+     * has to be called.
+     */
+    void add(final T shape, final Bounds bounds) {
+        final Entry<T> entry = entries.get(shape);
+        if (null != entry) {
+            // Another occurrence of the shape, its position is only known from the list
+            entry.count++;
+            orderValid = false;
+            update(shape, bounds);
+            return;
+        }
+        final Entry<T> newEntry = new Entry<>(shape, nextOrder++);
+        entries.put(shape, newEntry);
+        insert(newEntry, bounds);
+    }
+
+    /**
+     * Removes one occurrence of the given shape.
+     */
+    void remove(final T shape) {
+        final Entry<T> entry = entries.get(shape);
+        if (null == entry) { return; }
+        if (--entry.count > 0) {
+            orderValid = false;
+            return;
+        }
+        entries.remove(shape);
+        delete(entry);
+    }
+
+    void update(final T shape, final Bounds bounds) {
+        final Entry<T> entry = entries.get(shape);
+        if (null == entry) { return; }
+        if (entry.minX == bounds.getMinX() && entry.minY == bounds.getMinY() && entry.maxX == bounds.getMaxX() && entry.maxY == bounds.getMaxY()) { return; }
+        delete(entry);
+        insert(entry, bounds);
+    }
+
+    void clear() {
+        entries.clear();
+        cells.clear();
+        oversized.clear();
+        nextOrder  = 0;
+        orderValid = true;
+    }
+
+    /**
+     * Marks the order of the shapes as changed, e.g. after a shape has been
+     * inserted or the list has been sorted.
+     */
+    void invalidateOrder() { orderValid = false; }
+
+    /**
+     * Returns the shapes whose bounds intersect the given rectangle in the
+     * order of the given list.
+     */
+    List<T> query(final double minX, final double minY, final double maxX, final double maxY, final List<? extends T> shapes) {
+        if (!orderValid) { updateOrder(shapes); }
+
+        final int            queryStamp = ++stamp;
+        final List<Entry<T>> found      = new ArrayList<>();
+        final long           cx0        = cell(minX);
+        final long           cy0        = cell(minY);
+        final long           cx1        = cell(maxX);
+        final long           cy1        = cell(maxY);
+        if ((double) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) > cells.size()) {
+            // Large areas are faster to check shape by shape
+            for (Entry<T> entry : entries.values()) { collect(entry, queryStamp, minX, minY, maxX, maxY, found); }
+        } else {
+            for (long cx = cx0 ; cx <= cx1 ; cx++) {
+                for (long cy = cy0 ; cy <= cy1 ; cy++) {
+                    final List<Entry<T>> cell = cells.get(key(cx, cy));
+                    if (null == cell) { continue; }
+                    for (int i = 0, n = cell.size() ; i < n ; i++) { collect(cell.get(i), queryStamp, minX, minY, maxX, maxY, found); }
+                }
+            }
+            for (Entry<T> entry : oversized) { collect(entry, queryStamp, minX, minY, maxX, maxY, found); }
+        }
+        int occurrences = 0;
+        for (Entry<T> entry : found) { occurrences += entry.count; }
+        final List<T> result = new ArrayList<>(occurrences);
+        if (occurrences == found.size()) {
+            found.sort(Comparator.comparingInt(entry -> entry.order));
+            for (Entry<T> entry : found) { result.add(entry.shape); }
+            return result;
+        }
+        // Sort all occurrences by their position in the list
+        final long[] keys = new long[occurrences];
+        int          k    = 0;
+        for (int i = 0 ; i < found.size() ; i++) {
+            final Entry<T> entry = found.get(i);
+            keys[k++] = (long) entry.order << 32 | i;
+            for (int j = 0 ; j < entry.count - 1 ; j++) { keys[k++] = (long) entry.orders[j] << 32 | i; }
+        }
+        Arrays.sort(keys);
+        for (long key : keys) { result.add(found.get((int) key).shape); }
+        return result;
+    }
+
+    private void updateOrder(final List<? extends T> shapes) {
+        for (Entry<T> entry : entries.values()) { entry.seen = 0; }
+        nextOrder = 0;
+        for (T shape : shapes) {
+            final Entry<T> entry = entries.get(shape);
+            if (null == entry) { continue; }
+            if (0 == entry.seen) {
+                entry.order = nextOrder;
+            } else {
+                if (null == entry.orders || entry.orders.length < entry.count - 1) { entry.orders = new int[entry.count - 1]; }
+                if (entry.seen <= entry.orders.length) { entry.orders[entry.seen - 1] = nextOrder; }
+            }
+            entry.seen++;
+            nextOrder++;
+        }
+        orderValid = true;
+    }
+
+    private static <T> void collect(final Entry<T> entry, final int stamp, final double minX, final double minY, final double maxX, final double maxY, final List<Entry<T>> found) {
+        if (entry.stamp == stamp) { return; }
+        entry.stamp = stamp;
+        if (entry.maxX > minX && entry.minX < maxX && entry.maxY > minY && entry.minY < maxY) { found.add(entry); }
+    }
+
+    private void insert(final Entry<T> entry, final Bounds bounds) {
+        entry.minX = bounds.getMinX();
+        entry.minY = bounds.getMinY();
+        entry.maxX = bounds.getMaxX();
+        entry.maxY = bounds.getMaxY();
+        entry.cx0  = cell(entry.minX);
+        entry.cy0  = cell(entry.minY);
+        entry.cx1  = cell(entry.maxX);
+        entry.cy1  = cell(entry.maxY);
+        if ((double) (entry.cx1 - entry.cx0 + 1) * (entry.cy1 - entry.cy0 + 1) > MAX_CELLS) {
+            entry.oversized = true;
+            oversized.add(entry);
+            return;
+        }
+        entry.oversized = false;
+        for (long cx = entry.cx0 ; cx <= entry.cx1 ; cx++) {
+            for (long cy = entry.cy0 ; cy <= entry.cy1 ; cy++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(entry);
+            }
+        }
+    }
+
+    private void delete(final Entry<T> entry) {
+        if (entry.oversized) {
+            oversized.remove(entry);
+            return;
+        }
+        for (long cx = entry.cx0 ; cx <= entry.cx1 ; cx++) {
+            for (long cy = entry.cy0 ; cy <= entry.cy1 ; cy++) {
+                final Long           key  = key(cx, cy);
+                final List<Entry<T>> cell = cells.get(key);
+                if (null == cell) { continue; }
+                final int index = cell.indexOf(entry);
+                if (index >= 0) {
+                    // Order within a cell does not matter
+                    cell.set(index, cell.get(cell.size() - 1));
+                    cell.remove(cell.size() - 1);
+                }
+                if (cell.isEmpty()) { cells.remove(key); }
+            }
+        }
+    }
+
+    private long cell(final double coordinate) {
+        return (long) Math.floor(Helper.clamp(Integer.MIN_VALUE, Integer.MAX_VALUE, coordinate / cellSize));
+    }
+
+    private static Long key(final long cx, final long cy) { return (cx << 32) ^ (cy & 0xFFFFFFFFL); }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Entry<T> {
+        final T shape;
+        int     count;
+        int     order;
+        int[]   orders;
+        int     seen;
+        int     stamp;
+        boolean oversized;
+        double  minX;
+        double  minY;
+        double  maxX;
+        double  maxY;
+        long    cx0;
+        long    cy0;
+        long    cx1;
+        long    cy1;
+
+
+        Entry(final T shape, final int order) {
+            this.shape = shape;
+            this.count = 1;
+            this.order = order;
+        }
+    }
+}
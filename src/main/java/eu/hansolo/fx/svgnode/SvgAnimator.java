@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.Interpolator;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.util.Duration;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Animates the fill, stroke, stroke width and geometry of the SvgPaths of
+ * an SvgNode. All running animations are driven by one AnimationTimer and
+ * applied in one batch per pulse, so the node is redrawn at most once per
+ * frame no matter how many shapes are animated. Starting an animation of
+ * a property that is already animated replaces the running animation and
+ * continues from the current value. Geometries are morphed by
+ * interpolating the coordinates of two compiled geometries with the same
+ * commands (see SvgGeometry.interpolate()).
+ */
+public final class SvgAnimator {
+    private enum Property { FILL, STROKE, STROKE_WIDTH, GEOMETRY }
+
+    private static final Interpolator          DEFAULT_INTERPOLATOR = Interpolator.EASE_BOTH;
+    private        final SvgNode               node;
+    private        final Map<SvgPath, Tween[]> tweens;
+    private        final AnimationTimer        timer;
+    private              boolean               running;
+
+
+    // ******************** Constructors **************************************
+    public SvgAnimator(final SvgNode node) {
+        this.node   = node;
+        this.tweens = new IdentityHashMap<>();
+        this.timer  = new AnimationTimer() {
+            @Override public void handle(final long now) { pulse(now); }
+        };
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Animates the fill of the given shape to the given color. If the shape
+     * is not filled with a color, the animation starts with a transparent
+     * fill.
+     */
+    public void animateFill(final SvgPath svgPath, final Color fill, final Duration duration) {
+        animateFill(svgPath, fill, duration, DEFAULT_INTERPOLATOR);
+    }
+    public void animateFill(final SvgPath svgPath, final Color fill, final Duration duration, final Interpolator interpolator) {
+        Objects.requireNonNull(fill, "Fill must not be null");
+        start(svgPath, Property.FILL, new ColorTween(toColor(svgPath.getFill()), fill, duration, interpolator) {
+            @Override void apply(final SvgPath svgPath, final Color color) { svgPath.setFill(color); }
+        });
+    }
+
+    /**
+     * Animates the stroke of the given shape to the given color. If the shape
+     * is not stroked with a color, the animation starts with a transparent
+     * stroke.
+     */
+    public void animateStroke(final SvgPath svgPath, final Color stroke, final Duration duration) {
+        animateStroke(svgPath, stroke, duration, DEFAULT_INTERPOLATOR);
+    }
+    public void animateStroke(final SvgPath svgPath, final Color stroke, final Duration duration, final Interpolator interpolator) {
+        Objects.requireNonNull(stroke, "Stroke must not be null");
+        start(svgPath, Property.STROKE, new ColorTween(toColor(svgPath.getStroke()), stroke, duration, interpolator) {
+            @Override void apply(final SvgPath svgPath, final Color color) { svgPath.setStroke(color); }
+        });
+    }
+
+    public void animateStrokeWidth(final SvgPath svgPath, final double strokeWidth, final Duration duration) {
+        animateStrokeWidth(svgPath, strokeWidth, duration, DEFAULT_INTERPOLATOR);
+    }
+    public void animateStrokeWidth(final SvgPath svgPath, final double strokeWidth, final Duration duration, final Interpolator interpolator) {
+        final double from = svgPath.getStrokeWidth();
+        start(svgPath, Property.STROKE_WIDTH, new Tween(duration, interpolator) {
+            @Override void apply(final SvgPath svgPath, final double fraction) { svgPath.setStrokeWidth(from + (strokeWidth - from) * fraction); }
+        });
+    }
+
+    /**
+     * Morphs the geometry of the given shape into the given geometry. Both
+     * geometries must consist of the same commands, e.g. two paths that have
+     * been exported from the same drawing with different coordinates.
+     * @throws IllegalArgumentException if the geometries have different commands
+     */
+    public void morph(final SvgPath svgPath, final SvgGeometry geometry, final Duration duration) {
+        morph(svgPath, geometry, duration, DEFAULT_INTERPOLATOR);
+    }
+    public void morph(final SvgPath svgPath, final SvgGeometry geometry, final Duration duration, final Interpolator interpolator) {
+        Objects.requireNonNull(geometry, "Geometry must not be null");
+        final SvgGeometry from = svgPath.getGeometry();
+        if (!from.isMorphableTo(geometry)) { throw new IllegalArgumentException("Geometries have different commands"); }
+        start(svgPath, Property.GEOMETRY, new Tween(duration, interpolator) {
+            @Override void apply(final SvgPath svgPath, final double fraction) { svgPath.setGeometry(from.interpolate(geometry, fraction)); }
+        });
+    }
+    /**
+     * Morphs the geometry of the given shape into the given path, which is
+     * compiled once (see GeometryCache).
+     */
+    public void morph(final SvgPath svgPath, final String path, final Duration duration) {
+        morph(svgPath, GeometryCache.get(path), duration, DEFAULT_INTERPOLATOR);
+    }
+
+    /**
+     * Stops all animations of the given shape. The animated properties keep
+     * their current values.
+     */
+    public void stop(final SvgPath svgPath) {
+        tweens.remove(svgPath);
+        if (tweens.isEmpty()) { stopTimer(); }
+    }
+
+    public void stopAll() {
+        tweens.clear();
+        stopTimer();
+    }
+
+    public boolean isRunning() { return running; }
+
+    /**
+     * Returns the number of shapes that are currently animated.
+     */
+    public int getAnimatedShapeCount() { return tweens.size(); }
+
+    private void start(final SvgPath svgPath, final Property property, final Tween tween) {
+        tweens.computeIfAbsent(svgPath, key -> new Tween[Property.values().length])[property.ordinal()] = tween;
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    private void stopTimer() {
+        if (!running) { return; }
+        running = false;
+        timer.stop();
+    }
+
+    private void pulse(final long now) {
+        node.runBatch(() -> {
+            final Iterator<Map.Entry<SvgPath, Tween[]>> iterator = tweens.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<SvgPath, Tween[]> entry  = iterator.next();
+                final Tween[]                     shape  = entry.getValue();
+                boolean                           active = false;
+                for (int i = 0 ; i < shape.length ; i++) {
+                    if (null == shape[i]) { continue; }
+                    if (shape[i].update(entry.getKey(), now)) {
+                        active = true;
+                    } else {
+                        shape[i] = null;
+                    }
+                }
+                if (!active) { iterator.remove(); }
+            }
+        });
+        if (tweens.isEmpty()) { stopTimer(); }
+    }
+
+    private static Color toColor(final Paint paint) { return paint instanceof Color ? (Color) paint : Color.TRANSPARENT; }
+
+
+    // ******************** Inner Classes *************************************
+    private abstract static class Tween {
+        private final long         durationNanos;
+        private final Interpolator interpolator;
+        private       long         start;
+
+
+        Tween(final Duration duration, final Interpolator interpolator) {
+            this.durationNanos = null == duration ? 0 : (long) (duration.toMillis() * 1_000_000);
+            this.interpolator  = null == interpolator ? DEFAULT_INTERPOLATOR : interpolator;
+            this.start         = -1;
+        }
+
+
+        /**
+         * Applies the value for the given time and returns false if the
+         * animation is finished.
+         */
+        boolean update(final SvgPath svgPath, final long now) {
+            if (start < 0) { start = now; }
+            final double fraction = durationNanos <= 0 ? 1 : Math.min(1, (double) (now - start) / durationNanos);
+            apply(svgPath, fraction < 1 ? interpolator.interpolate(0.0, 1.0, fraction) : 1);
+            return fraction < 1;
+        }
+
+        abstract void apply(SvgPath svgPath, double fraction);
+    }
+
+    private abstract static class ColorTween extends Tween {
+        private final Color from;
+        private final Color to;
+
+
+        ColorTween(final Color from, final Color to, final Duration duration, final Interpolator interpolator) {
+            super(duration, interpolator);
+            this.from = from;
+            this.to   = to;
+        }
+
+
+        @Override void apply(final SvgPath svgPath, final double fraction) {
+            apply(svgPath, fraction >= 1 ? to : from.interpolate(to, fraction));
+        }
+
+        abstract void apply(SvgPath svgPath, Color color);
+    }
+}
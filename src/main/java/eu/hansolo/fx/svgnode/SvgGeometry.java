@@ -0,0 +1,712 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.canvas.GraphicsContext;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Immutable, compiled form of an SVG path string.
+ * The path is parsed once into a list of opcodes and a flat array of
+ * absolute coordinates. Relative, smooth and arc commands are resolved
+ * during compilation so that drawing only has to replay the commands.
+ * The commands and coordinates are either held on the heap or read
+ * directly from a (memory mapped) buffer, e.g. of an IconPack.
+ */
+public final class SvgGeometry {
+    public  static final byte         MOVE_TO  = 0;
+    public  static final byte         LINE_TO  = 1;
+    public  static final byte         QUAD_TO  = 2;
+    public  static final byte         CUBIC_TO = 3;
+    public  static final byte         CLOSE    = 4;
+    public  static final SvgGeometry  EMPTY    = new SvgGeometry(new byte[0], new double[0], "");
+    private static final int[]        COORDINATES_PER_COMMAND = { 2, 2, 4, 6, 0 };
+    private        final ByteBuffer   commands;
+    private        final DoubleBuffer coordinates;
+    private        final String       source;
+    private        final double       minX;
+    private        final double       minY;
+    private        final double       maxX;
+    private        final double       maxY;
+    private volatile     Levels[]     levels;
+
+
+    // ******************** Constructors **************************************
+    private SvgGeometry(final byte[] commands, final double[] coordinates, final String source) {
+        this.commands    = ByteBuffer.wrap(commands);
+        this.coordinates = DoubleBuffer.wrap(coordinates);
+        this.source      = source;
+
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0 ; i < coordinates.length ; i += 2) {
+            x0 = Math.min(x0, coordinates[i]);
+            y0 = Math.min(y0, coordinates[i + 1]);
+            x1 = Math.max(x1, coordinates[i]);
+            y1 = Math.max(y1, coordinates[i + 1]);
+        }
+        if (coordinates.length == 0) {
+            minX = minY = maxX = maxY = 0;
+        } else {
+            minX = x0;
+            minY = y0;
+            maxX = x1;
+            maxY = y1;
+        }
+    }
+    /**
+     * Creates a geometry that reads its commands and coordinates from the
+     * given buffers without copying them. The buffers must not be modified.
+     */
+    SvgGeometry(final ByteBuffer commands, final DoubleBuffer coordinates, final double minX, final double minY, final double maxX, final double maxY) {
+        this.commands    = commands;
+        this.coordinates = coordinates;
+        this.source      = null;
+        this.minX        = minX;
+        this.minY        = minY;
+        this.maxX        = maxX;
+        this.maxY        = maxY;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Parses the given SVG path data into a new geometry.
+     * @param path the SVG path data (the content of a d attribute)
+     * @return the compiled geometry, {@link #EMPTY} for null or blank paths
+     * @throws IllegalArgumentException if the path contains invalid data
+     */
+    public static SvgGeometry compile(final CharSequence path) {
+        if (null == path) { return EMPTY; }
+        return new Compiler(new SvgPath.SVGParser(path), path instanceof String ? (String) path : null).compile();
+    }
+    public static SvgGeometry compile(final char[] path) {
+        if (null == path) { return EMPTY; }
+        return new Compiler(new SvgPath.SVGParser(path), null).compile();
+    }
+    /**
+     * Parses the ASCII encoded path data between the position and the
+     * limit of the given buffer without decoding it into a String.
+     * The position of the buffer is not changed.
+     */
+    public static SvgGeometry compile(final ByteBuffer path) {
+        if (null == path) { return EMPTY; }
+        return new Compiler(new SvgPath.SVGParser(path), null).compile();
+    }
+
+    /**
+     * Creates a geometry from already compiled commands and absolute
+     * coordinates. The arrays are copied.
+     * @throws IllegalArgumentException if the number of coordinates does not match the commands
+     */
+    public static SvgGeometry of(final byte[] commands, final double[] coordinates) {
+        int expected = 0;
+        for (byte command : commands) {
+            if (command < MOVE_TO || command > CLOSE) { throw new IllegalArgumentException("invalid command (" + command + ")"); }
+            expected += COORDINATES_PER_COMMAND[command];
+        }
+        if (expected != coordinates.length) { throw new IllegalArgumentException("expected " + expected + " coordinates but got " + coordinates.length); }
+        if (0 == commands.length) { return EMPTY; }
+        return new SvgGeometry(Arrays.copyOf(commands, commands.length), Arrays.copyOf(coordinates, coordinates.length), null);
+    }
+
+    /**
+     * Returns the path string this geometry was compiled from or null if it
+     * was not compiled from a String.
+     */
+    public String getSource() { return source; }
+
+    public int getCommandCount() { return commands.limit(); }
+    public byte getCommand(final int index) { return commands.get(index); }
+    public byte[] getCommands() {
+        final byte[] copy = new byte[commands.limit()];
+        commands.duplicate().get(copy);
+        return copy;
+    }
+
+    public int getCoordinateCount() { return coordinates.limit(); }
+    public double getCoordinate(final int index) { return coordinates.get(index); }
+    public double[] getCoordinates() {
+        final double[] copy = new double[coordinates.limit()];
+        coordinates.duplicate().get(copy);
+        return copy;
+    }
+
+    public static int getCoordinateCount(final byte command) { return COORDINATES_PER_COMMAND[command]; }
+
+    public boolean isEmpty() { return commands.limit() == 0; }
+
+    /**
+     * Returns true if the commands and coordinates are not held on the heap
+     * but read from a direct or memory mapped buffer.
+     */
+    public boolean isDirect() { return commands.isDirect(); }
+
+    /**
+     * Returns the estimated number of bytes that are used by this geometry
+     * (without the source string).
+     */
+    public long getSizeInBytes() { return isDirect() ? 160 : 160 + commands.limit() + 8L * coordinates.limit(); }
+
+    /**
+     * Converts the geometry back into SVG path data using absolute commands.
+     */
+    public String toPathString() {
+        final StringBuilder builder = new StringBuilder();
+        int c = 0;
+        for (int i = 0, n = commands.limit() ; i < n ; i++) {
+            final byte command = commands.get(i);
+            builder.append("MLQCZ".charAt(command));
+            for (int j = 0 ; j < COORDINATES_PER_COMMAND[command] ; j++) {
+                if (j > 0) { builder.append(' '); }
+                final double value = coordinates.get(c++);
+                if (value == (long) value) {
+                    builder.append((long) value);
+                } else {
+                    builder.append(value);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The bounds of all points including the control points. This is
+     * never smaller than the exact bounds of the outline.
+     */
+    public double getMinX() { return minX; }
+    public double getMinY() { return minY; }
+    public double getMaxX() { return maxX; }
+    public double getMaxY() { return maxY; }
+
+    /**
+     * Appends the path elements to the current path of the given context.
+     * It neither begins a new path nor fills or strokes it.
+     * @param ctx the GraphicsContext to add the path elements to
+     */
+    public void appendTo(final GraphicsContext ctx) {
+        final DoubleBuffer c = coordinates;
+        int i = 0;
+        for (int j = 0, n = commands.limit() ; j < n ; j++) {
+            switch (commands.get(j)) {
+                case MOVE_TO : ctx.moveTo(c.get(i), c.get(i + 1)); i += 2; break;
+                case LINE_TO : ctx.lineTo(c.get(i), c.get(i + 1)); i += 2; break;
+                case QUAD_TO : ctx.quadraticCurveTo(c.get(i), c.get(i + 1), c.get(i + 2), c.get(i + 3)); i += 4; break;
+                case CUBIC_TO: ctx.bezierCurveTo(c.get(i), c.get(i + 1), c.get(i + 2), c.get(i + 3), c.get(i + 4), c.get(i + 5)); i += 6; break;
+                case CLOSE   : ctx.closePath(); break;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given geometry consists of the same commands as
+     * this geometry, which means both can be interpolated.
+     */
+    public boolean isMorphableTo(final SvgGeometry geometry) {
+        return commands.limit() == geometry.commands.limit() && commands.equals(geometry.commands);
+    }
+
+    /**
+     * Returns the geometry at the given fraction between this and the given
+     * geometry by interpolating the coordinates linearly. Both geometries
+     * must consist of the same commands (see isMorphableTo()). The result
+     * shares the commands with this geometry, only the coordinates are
+     * allocated.
+     * @param to       the geometry at a fraction of 1
+     * @param fraction the fraction between 0 and 1
+     * @return the interpolated geometry, this for 0 and the given geometry for 1
+     * @throws IllegalArgumentException if the geometries have a different number of coordinates
+     */
+    public SvgGeometry interpolate(final SvgGeometry to, final double fraction) {
+        if (fraction <= 0) { return this; }
+        if (fraction >= 1) { return to; }
+        final int n = coordinates.limit();
+        if (n != to.coordinates.limit() || commands.limit() != to.commands.limit()) { throw new IllegalArgumentException("Geometries have different commands"); }
+        if (0 == n) { return this; }
+        final double[] c  = new double[n];
+        double         x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double         x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0 ; i < n ; i += 2) {
+            final double x = coordinates.get(i) + (to.coordinates.get(i) - coordinates.get(i)) * fraction;
+            final double y = coordinates.get(i + 1) + (to.coordinates.get(i + 1) - coordinates.get(i + 1)) * fraction;
+            c[i]     = x;
+            c[i + 1] = y;
+            x0 = Math.min(x0, x);
+            y0 = Math.min(y0, y);
+            x1 = Math.max(x1, x);
+            y1 = Math.max(y1, y);
+        }
+        return new SvgGeometry(commands, DoubleBuffer.wrap(c), x0, y0, x1, y1);
+    }
+
+    /**
+     * Returns a simplified version of this geometry for drawing it at the
+     * given scale. Curves are flattened and the resulting polylines are
+     * reduced with the Douglas-Peucker algorithm so that the result differs
+     * at most by the given tolerance in pixels from this geometry. Subpaths
+     * that are smaller than the tolerance are removed. The levels are
+     * computed for scales that are powers of two and cached, so all paths
+     * that share this geometry share the levels too. The levels of the
+     * last few tolerances are kept, so nodes with different tolerances can
+     * draw the same geometry.
+     * @param scale     the scale the geometry is drawn with
+     * @param tolerance the maximum deviation in pixels
+     * @return the simplified geometry or this if simplifying does not reduce it
+     */
+    public SvgGeometry getLevelOfDetail(final double scale, final double tolerance) {
+        if (!(scale > 0) || !(tolerance > 0) || Double.isInfinite(scale) || isEmpty()) { return this; }
+        final Levels current = getLevels(tolerance);
+        // The level of a bucket is simplified for its largest scale
+        final int   bucket = (int) Helper.clamp(-Levels.MAX_EXPONENT, Levels.MAX_EXPONENT - 1, Math.getExponent(scale));
+        SvgGeometry level  = current.geometries[bucket + Levels.MAX_EXPONENT];
+        if (null == level) {
+            level = simplify(tolerance / Math.scalb(1.0, bucket + 1));
+            current.geometries[bucket + Levels.MAX_EXPONENT] = level;
+        }
+        return level;
+    }
+
+    private Levels getLevels(final double tolerance) {
+        final Levels[] all = levels;
+        if (null != all) {
+            for (Levels current : all) {
+                if (current.tolerance == tolerance) { return current; }
+            }
+        }
+        // Copy on write, threads that race at worst compute a level twice
+        final Levels   created = new Levels(tolerance);
+        final int      kept    = null == all ? 0 : Math.min(all.length, Levels.MAX_TOLERANCES - 1);
+        final Levels[] updated = new Levels[kept + 1];
+        updated[0] = created;
+        if (kept > 0) { System.arraycopy(all, 0, updated, 1, kept); }
+        levels = updated;
+        return created;
+    }
+
+    private SvgGeometry simplify(final double tolerance) {
+        final Simplifier simplifier = new Simplifier(tolerance);
+        PathFlattener.flatten(this, tolerance * 0.5, simplifier);
+        simplifier.finish(false);
+        if (simplifier.coordinateCount >= coordinates.limit()) { return this; }
+        return new SvgGeometry(Arrays.copyOf(simplifier.commands, simplifier.commandCount), Arrays.copyOf(simplifier.coordinates, simplifier.coordinateCount), null);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Levels {
+        static final int           MAX_EXPONENT   = 32;
+        static final int           MAX_TOLERANCES = 4;
+        final        double        tolerance;
+        final        SvgGeometry[] geometries;
+
+
+        Levels(final double tolerance) {
+            this.tolerance  = tolerance;
+            this.geometries = new SvgGeometry[2 * MAX_EXPONENT];
+        }
+    }
+
+    /**
+     * Collects the flattened subpaths and reduces each of them with the
+     * Douglas-Peucker algorithm.
+     */
+    private static class Simplifier implements PathFlattener.Sink {
+        private final double    tolerance;
+        private       double[]  points;
+        private       int       pointCount;
+        private       int[]     stack;
+        private       boolean[] keep;
+                      byte[]    commands;
+                      double[]  coordinates;
+                      int       commandCount;
+                      int       coordinateCount;
+
+
+        Simplifier(final double tolerance) {
+            this.tolerance   = tolerance;
+            this.points      = new double[64];
+            this.stack       = new int[64];
+            this.keep        = new boolean[32];
+            this.commands    = new byte[16];
+            this.coordinates = new double[64];
+        }
+
+
+        @Override public void moveTo(final double x, final double y) {
+            finish(false);
+            addPoint(x, y);
+        }
+
+        @Override public void lineTo(final double x, final double y) { addPoint(x, y); }
+
+        @Override public void closePath() { finish(true); }
+
+        void finish(final boolean closed) {
+            final int n = pointCount;
+            pointCount = 0;
+            if (n == 0) { return; }
+
+            double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+            for (int i = 0 ; i < n ; i++) {
+                x0 = Math.min(x0, points[2 * i]);
+                y0 = Math.min(y0, points[2 * i + 1]);
+                x1 = Math.max(x1, points[2 * i]);
+                y1 = Math.max(y1, points[2 * i + 1]);
+            }
+            if (x1 - x0 < tolerance && y1 - y0 < tolerance) { return; }
+
+            if (keep.length < n) { keep = new boolean[n]; }
+            Arrays.fill(keep, 0, n, false);
+            keep[0]     = true;
+            keep[n - 1] = true;
+            int top = 0;
+            stack[top++] = 0;
+            stack[top++] = n - 1;
+            while (top > 0) {
+                final int last  = stack[--top];
+                final int first = stack[--top];
+                int       index = -1;
+                double    max   = tolerance * 0.5;
+                for (int i = first + 1 ; i < last ; i++) {
+                    final double distance = distance(i, first, last);
+                    if (distance > max) {
+                        max   = distance;
+                        index = i;
+                    }
+                }
+                if (index >= 0) {
+                    keep[index] = true;
+                    if (top + 4 > stack.length) { stack = Arrays.copyOf(stack, stack.length * 2); }
+                    stack[top++] = first;
+                    stack[top++] = index;
+                    stack[top++] = index;
+                    stack[top++] = last;
+                }
+            }
+
+            add(MOVE_TO, points[0], points[1]);
+            for (int i = 1 ; i < n ; i++) {
+                if (keep[i]) { add(LINE_TO, points[2 * i], points[2 * i + 1]); }
+            }
+            if (closed) { add(CLOSE); }
+        }
+
+        /**
+         * Returns the distance of the point at the given index from the line
+         * segment between the points at the given indices.
+         */
+        private double distance(final int index, final int first, final int last) {
+            final double px = points[2 * index],  py = points[2 * index + 1];
+            final double ax = points[2 * first],  ay = points[2 * first + 1];
+            final double dx = points[2 * last] - ax;
+            final double dy = points[2 * last + 1] - ay;
+            final double ll = dx * dx + dy * dy;
+            final double t  = ll > 0 ? Helper.clamp(0, 1, ((px - ax) * dx + (py - ay) * dy) / ll) : 0;
+            return Math.hypot(px - ax - t * dx, py - ay - t * dy);
+        }
+
+        private void addPoint(final double x, final double y) {
+            if (2 * pointCount + 2 > points.length) { points = Arrays.copyOf(points, points.length * 2); }
+            points[2 * pointCount]     = x;
+            points[2 * pointCount + 1] = y;
+            pointCount++;
+        }
+
+        private void add(final byte command, final double... values) {
+            if (commandCount == commands.length) { commands = Arrays.copyOf(commands, commandCount * 2); }
+            if (coordinateCount + values.length > coordinates.length) { coordinates = Arrays.copyOf(coordinates, Math.max(coordinates.length * 2, coordinateCount + values.length)); }
+            commands[commandCount++] = command;
+            System.arraycopy(values, 0, coordinates, coordinateCount, values.length);
+            coordinateCount += values.length;
+        }
+    }
+
+    private static class Compiler {
+        private final SvgPath.SVGParser p;
+        private final String            source;
+        private       byte[]            commands;
+        private       double[]          coordinates;
+        private       int               commandCount;
+        private       int               coordinateCount;
+        private       double            x;
+        private       double            y;
+        private       double            startX;
+        private       double            startY;
+        private       double            ctrlX;
+        private       double            ctrlY;
+        private       char              lastCmd;
+
+
+        Compiler(final SvgPath.SVGParser parser, final String source) {
+            p           = parser;
+            this.source = source;
+            commands    = new byte[16];
+            coordinates = new double[64];
+        }
+
+
+        SvgGeometry compile() {
+            while (!p.isDone()) {
+                p.allowComma = false;
+                char cmd = p.getChar();
+                switch (cmd) {
+                    case 'M':
+                    case 'm':
+                        moveTo(cmd == 'm' && commandCount > 0, p.f(), p.f());
+                        while (p.nextIsNumber()) { lineTo(cmd == 'm', p.f(), p.f()); }
+                        break;
+                    case 'L':
+                    case 'l':
+                        do { lineTo(cmd == 'l', p.f(), p.f()); } while (p.nextIsNumber());
+                        break;
+                    case 'H':
+                    case 'h':
+                        do { lineTo(false, cmd == 'h' ? x + p.f() : p.f(), y); } while (p.nextIsNumber());
+                        break;
+                    case 'V':
+                    case 'v':
+                        do { lineTo(false, x, cmd == 'v' ? y + p.f() : p.f()); } while (p.nextIsNumber());
+                        break;
+                    case 'Q':
+                    case 'q':
+                        do { quadTo(cmd == 'q', p.f(), p.f(), p.f(), p.f()); } while (p.nextIsNumber());
+                        break;
+                    case 'T':
+                    case 't':
+                        do {
+                            boolean smooth = lastCmd == 'Q' || lastCmd == 'T';
+                            double  cx     = smooth ? 2 * x - ctrlX : x;
+                            double  cy     = smooth ? 2 * y - ctrlY : y;
+                            double  ex     = p.f();
+                            double  ey     = p.f();
+                            quadTo(false, cx, cy, cmd == 't' ? x + ex : ex, cmd == 't' ? y + ey : ey);
+                            lastCmd = 'T';
+                        } while (p.nextIsNumber());
+                        break;
+                    case 'C':
+                    case 'c':
+                        do { cubicTo(cmd == 'c', p.f(), p.f(), p.f(), p.f(), p.f(), p.f()); } while (p.nextIsNumber());
+                        break;
+                    case 'S':
+                    case 's':
+                        do {
+                            boolean smooth = lastCmd == 'C' || lastCmd == 'S';
+                            double  c1x    = smooth ? 2 * x - ctrlX : x;
+                            double  c1y    = smooth ? 2 * y - ctrlY : y;
+                            double  c2x    = p.f();
+                            double  c2y    = p.f();
+                            double  ex     = p.f();
+                            double  ey     = p.f();
+                            if (cmd == 's') {
+                                c2x += x;
+                                c2y += y;
+                                ex  += x;
+                                ey  += y;
+                            }
+                            cubicTo(false, c1x, c1y, c2x, c2y, ex, ey);
+                            lastCmd = 'S';
+                        } while (p.nextIsNumber());
+                        break;
+                    case 'A':
+                    case 'a':
+                        do {
+                            double  rx           = p.f();
+                            double  ry           = p.f();
+                            double  a            = p.a();
+                            boolean largeArcFlag = p.b();
+                            boolean sweepFlag    = p.b();
+                            double  ex           = p.f();
+                            double  ey           = p.f();
+                            if (cmd == 'a') {
+                                ex += x;
+                                ey += y;
+                            }
+                            arcTo(rx, ry, a, largeArcFlag, sweepFlag, ex, ey);
+                        } while (p.nextIsNumber());
+                        break;
+                    case 'Z':
+                    case 'z':
+                        add(CLOSE);
+                        x       = startX;
+                        y       = startY;
+                        lastCmd = 'Z';
+                        break;
+                    default:
+                        throw new IllegalArgumentException("invalid command (" + cmd + ") in SVG polygon at pos=" + p.pos);
+                }
+                p.allowComma = false;
+            }
+            if (commandCount == 0) { return EMPTY; }
+            return new SvgGeometry(Arrays.copyOf(commands, commandCount), Arrays.copyOf(coordinates, coordinateCount), source);
+        }
+
+        private void moveTo(final boolean relative, final double mx, final double my) {
+            x       = relative ? x + mx : mx;
+            y       = relative ? y + my : my;
+            startX  = x;
+            startY  = y;
+            lastCmd = 'M';
+            add(MOVE_TO, x, y);
+        }
+
+        private void lineTo(final boolean relative, final double lx, final double ly) {
+            x       = relative ? x + lx : lx;
+            y       = relative ? y + ly : ly;
+            lastCmd = 'L';
+            add(LINE_TO, x, y);
+        }
+
+        private void quadTo(final boolean relative, final double cx, final double cy, final double ex, final double ey) {
+            ctrlX   = relative ? x + cx : cx;
+            ctrlY   = relative ? y + cy : cy;
+            x       = relative ? x + ex : ex;
+            y       = relative ? y + ey : ey;
+            lastCmd = 'Q';
+            add(QUAD_TO, ctrlX, ctrlY, x, y);
+        }
+
+        private void cubicTo(final boolean relative, final double c1x, final double c1y, final double c2x, final double c2y, final double ex, final double ey) {
+            double x1 = relative ? x + c1x : c1x;
+            double y1 = relative ? y + c1y : c1y;
+            ctrlX     = relative ? x + c2x : c2x;
+            ctrlY     = relative ? y + c2y : c2y;
+            x         = relative ? x + ex : ex;
+            y         = relative ? y + ey : ey;
+            lastCmd   = 'C';
+            add(CUBIC_TO, x1, y1, ctrlX, ctrlY, x, y);
+        }
+
+        /**
+         * Converts an SVG endpoint arc into cubic bezier segments of at most 90 degrees
+         * (see SVG 1.1 implementation notes F.6.5 and F.6.6).
+         */
+        private void arcTo(final double radiusX, final double radiusY, final double angle, final boolean largeArc, final boolean sweep, final double ex, final double ey) {
+            final double x0 = x;
+            final double y0 = y;
+            lastCmd = 'A';
+            if (x0 == ex && y0 == ey) { return; }
+            double rx = Math.abs(radiusX);
+            double ry = Math.abs(radiusY);
+            if (rx == 0 || ry == 0) {
+                lineTo(false, ex, ey);
+                lastCmd = 'A';
+                return;
+            }
+
+            final double cos = Math.cos(angle);
+            final double sin = Math.sin(angle);
+            final double dx2 = (x0 - ex) * 0.5;
+            final double dy2 = (y0 - ey) * 0.5;
+            final double x1p = cos * dx2 + sin * dy2;
+            final double y1p = -sin * dx2 + cos * dy2;
+
+            final double lambda = (x1p * x1p) / (rx * rx) + (y1p * y1p) / (ry * ry);
+            if (lambda > 1) {
+                final double s = Math.sqrt(lambda);
+                rx *= s;
+                ry *= s;
+            }
+
+            final double rx2  = rx * rx;
+            final double ry2  = ry * ry;
+            final double num  = rx2 * ry2 - rx2 * y1p * y1p - ry2 * x1p * x1p;
+            final double den  = rx2 * y1p * y1p + ry2 * x1p * x1p;
+            final double coef = (largeArc == sweep ? -1 : 1) * Math.sqrt(Math.max(0, num / den));
+            final double cxp  = coef * (rx * y1p / ry);
+            final double cyp  = coef * -(ry * x1p / rx);
+            final double cx   = cos * cxp - sin * cyp + (x0 + ex) * 0.5;
+            final double cy   = sin * cxp + cos * cyp + (y0 + ey) * 0.5;
+
+            final double ux     = (x1p - cxp) / rx;
+            final double uy     = (y1p - cyp) / ry;
+            final double vx     = (-x1p - cxp) / rx;
+            final double vy     = (-y1p - cyp) / ry;
+            final double theta1 = Math.atan2(uy, ux);
+            double       dTheta = Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+            if (!sweep && dTheta > 0) {
+                dTheta -= 2 * Math.PI;
+            } else if (sweep && dTheta < 0) {
+                dTheta += 2 * Math.PI;
+            }
+
+            final int    segments = (int) Math.ceil(Math.abs(dTheta) / (Math.PI * 0.5) - 1e-9);
+            final double delta    = dTheta / segments;
+            final double t        = 4.0 / 3.0 * Math.tan(delta / 4);
+            double       th1      = theta1;
+            for (int i = 0 ; i < segments ; i++) {
+                final double th2  = th1 + delta;
+                final double cos1 = Math.cos(th1);
+                final double sin1 = Math.sin(th1);
+                final double cos2 = Math.cos(th2);
+                final double sin2 = Math.sin(th2);
+                final double p1x  = rx * (cos1 - t * sin1);
+                final double p1y  = ry * (sin1 + t * cos1);
+                final double p2x  = rx * (cos2 + t * sin2);
+                final double p2y  = ry * (sin2 - t * cos2);
+                final boolean last = i == segments - 1;
+                final double p3x  = last ? ex : cos * rx * cos2 - sin * ry * sin2 + cx;
+                final double p3y  = last ? ey : sin * rx * cos2 + cos * ry * sin2 + cy;
+                add(CUBIC_TO, cos * p1x - sin * p1y + cx, sin * p1x + cos * p1y + cy,
+                              cos * p2x - sin * p2y + cx, sin * p2x + cos * p2y + cy,
+                              p3x, p3y);
+                th1 = th2;
+            }
+            x = ex;
+            y = ey;
+        }
+
+        private void add(final byte command) {
+            if (commandCount == commands.length) { commands = Arrays.copyOf(commands, commandCount * 2); }
+            commands[commandCount++] = command;
+        }
+        private void add(final byte command, final double x, final double y) {
+            add(command);
+            ensureCoordinateCapacity(2);
+            coordinates[coordinateCount++] = x;
+            coordinates[coordinateCount++] = y;
+        }
+        private void add(final byte command, final double x1, final double y1, final double x, final double y) {
+            add(command);
+            ensureCoordinateCapacity(4);
+            coordinates[coordinateCount++] = x1;
+            coordinates[coordinateCount++] = y1;
+            coordinates[coordinateCount++] = x;
+            coordinates[coordinateCount++] = y;
+        }
+        private void add(final byte command, final double x1, final double y1, final double x2, final double y2, final double x, final double y) {
+            add(command);
+            ensureCoordinateCapacity(6);
+            coordinates[coordinateCount++] = x1;
+            coordinates[coordinateCount++] = y1;
+            coordinates[coordinateCount++] = x2;
+            coordinates[coordinateCount++] = y2;
+            coordinates[coordinateCount++] = x;
+            coordinates[coordinateCount++] = y;
+        }
+
+        private void ensureCoordinateCapacity(final int additional) {
+            if (coordinateCount + additional > coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, Math.max(coordinates.length * 2, coordinateCount + additional));
+            }
+        }
+    }
+}
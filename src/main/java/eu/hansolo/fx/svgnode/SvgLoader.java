@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.application.Platform;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+
+/**
+ * Streaming loader for SVG documents. The document is read with a StAX
+ * parser and every path element is converted into an SvgPath as soon as
+ * it has been read, so neither a DOM nor the list of all path strings
+ * has to be kept in memory.
+ * Supported are the d attribute and the fill, stroke, stroke-width,
+ * fill-rule, stroke-linejoin and stroke-linecap presentation attributes
+ * and style properties, which are inherited from enclosing groups.
+ * Transforms, gradients and other shape elements are not supported.
+ * Paths in elements that are not rendered directly (defs, clipPath, mask,
+ * marker, pattern and symbol) and paths with display none are skipped.
+ */
+public final class SvgLoader {
+    private static final int         BUFFER_SIZE   = 64 * 1024;
+    private static final int         CHUNK_SIZE    = 256;
+    private static final int         MAX_IN_FLIGHT = 4;
+    // Elements whose content is only drawn when it is referenced
+    private static final Set<String> NON_RENDERED  = Set.of("defs", "clipPath", "mask", "marker", "pattern", "symbol");
+
+
+    // ******************** Constructors **************************************
+    private SvgLoader() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Reads the given SVG file and passes each path to the given consumer
+     * in document order. The consumer is called on the calling thread.
+     */
+    public static void load(final Path file, final Consumer<SvgPath> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream inputStream = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE)) {
+            load(inputStream, consumer);
+        }
+    }
+    public static void load(final InputStream inputStream, final Consumer<SvgPath> consumer) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = createFactory().createXMLStreamReader(inputStream);
+            final Deque<Style> styles = new ArrayDeque<>();
+            styles.push(new Style());
+            // Depth of the elements inside of a non rendered element, they are skipped
+            int skipped = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (skipped > 0 || NON_RENDERED.contains(reader.getLocalName())) {
+                            skipped++;
+                            break;
+                        }
+                        final Style style = new Style(styles.peek());
+                        style.apply(reader);
+                        styles.push(style);
+                        if (style.displayed && "path".equals(reader.getLocalName())) {
+                            final String d = reader.getAttributeValue(null, "d");
+                            if (null != d) { consumer.accept(style.createPath(d)); }
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (skipped > 0) {
+                            skipped--;
+                        } else {
+                            styles.pop();
+                        }
+                        break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(null == reader ? e.getMessage() : e.getMessage() + " at line " + reader.getLocation().getLineNumber(), e);
+        } finally {
+            if (null != reader) {
+                try { reader.close(); } catch (XMLStreamException e) { }
+            }
+        }
+    }
+
+    /**
+     * Reads the given SVG file on a background thread and adds the paths to
+     * the given node while the file is parsed. The paths are handed to the
+     * FX thread in chunks and the parser waits if the FX thread falls behind,
+     * so the memory used does not depend on the size of the file.
+     * @return a future that completes when all paths have been added
+     */
+    public static CompletableFuture<Void> loadInto(final Path file, final SvgNode svgNode) {
+        return CompletableFuture.runAsync(() -> {
+            final Semaphore     inFlight = new Semaphore(MAX_IN_FLIGHT);
+            final List<SvgPath> chunk    = new ArrayList<>(CHUNK_SIZE);
+            final Consumer<List<SvgPath>> flush = paths -> {
+                inFlight.acquireUninterruptibly();
+                Platform.runLater(() -> {
+                    svgNode.getShapes().addAll(paths);
+                    inFlight.release();
+                });
+            };
+            try {
+                load(file, svgPath -> {
+                    chunk.add(svgPath);
+                    if (chunk.size() == CHUNK_SIZE) {
+                        flush.accept(new ArrayList<>(chunk));
+                        chunk.clear();
+                    }
+                });
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            if (!chunk.isEmpty()) { flush.accept(new ArrayList<>(chunk)); }
+            // Wait until all chunks have been added
+            inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+        }, Helper.getDefaultExecutor());
+    }
+
+    private static XMLInputFactory createFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Style {
+        Paint          fill;
+        Paint          stroke;
+        double         strokeWidth;
+        FillRule       fillRule;
+        StrokeLineJoin lineJoin;
+        StrokeLineCap  lineCap;
+        boolean        displayed;
+
+
+        Style() {
+            fill        = Color.BLACK;
+            stroke      = null;
+            strokeWidth = 1;
+            fillRule    = FillRule.NON_ZERO;
+            lineJoin    = StrokeLineJoin.MITER;
+            lineCap     = StrokeLineCap.BUTT;
+            displayed   = true;
+        }
+        Style(final Style parent) {
+            fill        = parent.fill;
+            stroke      = parent.stroke;
+            strokeWidth = parent.strokeWidth;
+            fillRule    = parent.fillRule;
+            lineJoin    = parent.lineJoin;
+            lineCap     = parent.lineCap;
+            displayed   = parent.displayed;
+        }
+
+
+        void apply(final XMLStreamReader reader) {
+            for (int i = 0 ; i < reader.getAttributeCount() ; i++) {
+                final String name = reader.getAttributeLocalName(i);
+                if ("style".equals(name)) {
+                    for (String declaration : reader.getAttributeValue(i).split(";")) {
+                        final int colon = declaration.indexOf(':');
+                        if (colon > 0) { set(declaration.substring(0, colon).trim(), declaration.substring(colon + 1).trim()); }
+                    }
+                } else {
+                    set(name, reader.getAttributeValue(i).trim());
+                }
+            }
+        }
+
+        void set(final String name, final String value) {
+            switch (name) {
+                case "fill"           : fill        = parsePaint(value, fill); break;
+                case "stroke"         : stroke      = parsePaint(value, stroke); break;
+                // A child cannot show what display none of an ancestor hides
+                case "display"        : displayed   = displayed && !"none".equals(value); break;
+                case "stroke-width"   : strokeWidth = parseLength(value, strokeWidth); break;
+                case "fill-rule"      : fillRule    = "evenodd".equals(value) ? FillRule.EVEN_ODD : "nonzero".equals(value) ? FillRule.NON_ZERO : fillRule; break;
+                case "stroke-linejoin":
+                    switch (value) {
+                        case "miter": lineJoin = StrokeLineJoin.MITER; break;
+                        case "round": lineJoin = StrokeLineJoin.ROUND; break;
+                        case "bevel": lineJoin = StrokeLineJoin.BEVEL; break;
+                    }
+                    break;
+                case "stroke-linecap" :
+                    switch (value) {
+                        case "butt"  : lineCap = StrokeLineCap.BUTT; break;
+                        case "round" : lineCap = StrokeLineCap.ROUND; break;
+                        case "square": lineCap = StrokeLineCap.SQUARE; break;
+                    }
+                    break;
+            }
+        }
+
+        SvgPath createPath(final String d) {
+            final SvgPath svgPath = new SvgPath(d, fill, stroke, strokeWidth, fillRule, null, true);
+            svgPath.setLineJoin(lineJoin);
+            svgPath.setLineCap(lineCap);
+            return svgPath;
+        }
+
+        private static Paint parsePaint(final String value, final Paint inherited) {
+            // No paint is null so that nothing is drawn, hit tested or padded for it
+            if ("none".equals(value)) { return null; }
+            if ("inherit".equals(value) || "currentColor".equals(value) || value.startsWith("url(")) { return inherited; }
+            try {
+                return Color.web(value);
+            } catch (IllegalArgumentException e) {
+                return inherited;
+            }
+        }
+
+        private static double parseLength(final String value, final double inherited) {
+            int end = value.length();
+            while (end > 0 && Character.isLetter(value.charAt(end - 1))) { end--; }
+            try {
+                return Double.parseDouble(value.substring(0, end));
+            } catch (NumberFormatException e) {
+                return inherited;
+            }
+        }
+    }
+}
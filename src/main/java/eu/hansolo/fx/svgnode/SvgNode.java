@@ -16,17 +16,33 @@
 
 package eu.hansolo.fx.svgnode;
 
-import javafx.beans.value.ChangeListener;
+import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.geometry.Dimension2D;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -35,24 +51,58 @@ import java.util.List;
  * Time: 07:14
  */
 public class SvgNode extends Region {
-    private static final double                  PREFERRED_WIDTH  = -1;
-    private static final double                  PREFERRED_HEIGHT = -1;
-    private static final double                  MINIMUM_WIDTH    = 5;
-    private static final double                  MINIMUM_HEIGHT   = 5;
-    private static final double                  MAXIMUM_WIDTH    = 4096;
-    private static final double                  MAXIMUM_HEIGHT   = 4096;
-    private static       double                  aspectRatio;
-    private              boolean                 keepAspect;
-    private              boolean                 dirty;
-    private              double                  size;
-    private              double                  width;
-    private              double                  height;
-    private              Canvas                  canvas;
-    private              GraphicsContext         ctx;
-    private              ObservableList<SvgPath> shapes;
-    private              double                  scaleX;
-    private              double                  scaleY;
-    private              ChangeListener<Boolean> dirtyListener;
+    public  static final double                   DEFAULT_LOD_TOLERANCE = 0.25;
+    public  static final Duration                 DEFAULT_RESIZE_DELAY  = Duration.millis(200);
+    private static final double                   PREFERRED_WIDTH       = -1;
+    private static final double                   PREFERRED_HEIGHT      = -1;
+    private static final double                   MINIMUM_WIDTH         = 5;
+    private static final double                   MINIMUM_HEIGHT        = 5;
+    private static final double                   MAXIMUM_WIDTH         = 4096;
+    private static final double                   MAXIMUM_HEIGHT        = 4096;
+    private static final double                   PICK_TOLERANCE        = 0.1;
+    private static final double                   MAXIMUM_RASTER_SIZE   = 8192;
+    private static       double                   aspectRatio;
+    private              boolean                  keepAspect;
+    private              boolean                  dirty;
+    private              double                   size;
+    private              double                   width;
+    private              double                   height;
+    private              Canvas                   canvas;
+    private              double                   canvasWidth;
+    private              double                   canvasHeight;
+    private              double                   rasterScaleX;
+    private              double                   rasterScaleY;
+    private              boolean                  crispResize;
+    private              Duration                 resizeDelay;
+    private              PauseTransition          resizeSettle;
+    private              TreeMap<Integer, Layer>  layers;
+    private              ObservableList<SvgPath>  shapes;
+    private              ObservableList<SvgShape> lightShapes;
+    private              SvgShapeStore            shapeStore;
+    private              double                   scaleX;
+    private              double                   scaleY;
+    private              AnimationTimer           redrawTimer;
+    private              Duration                 redrawInterval;
+    private              long                     lastRedraw;
+    private              boolean                  redrawScheduled;
+    private              int                      batchDepth;
+    private              DirtyTracker             tracker;
+    private              Painted[]                painted;
+    private              boolean                  rasterCacheEnabled;
+    private              RasterCache              rasterCache;
+    private              Canvas                   rasterCanvas;
+    private              boolean                  effectCacheEnabled;
+    private              RasterCache              effectCache;
+    private              double                   lodTolerance;
+    private              SpatialIndex<SvgPath>    index;
+    private              SpatialIndex<SvgShape>   lightIndex;
+    private              Rectangle2D              viewport;
+    private              RenderMetrics            metrics;
+    private              int                      redrawCauses;
+    private              int                      shapesDrawn;
+    private              boolean                  shapeTiming;
+    private              boolean                  batchedRendering;
+    private        final BatchRenderer            batchRenderer;
 
 
     // ******************** Constructors **************************************
@@ -63,12 +113,35 @@ public class SvgNode extends Region {
         this(true, Arrays.asList(shapes));
     }
     public SvgNode(final boolean keepAspect, final List<SvgPath> shapes) {
-        this.shapes        = FXCollections.observableArrayList(shapes);
-        this.scaleX        = 1.0;
-        this.scaleY        = 1.0;
-        this.keepAspect    = keepAspect;
-        this.dirty         = true;
-        this.dirtyListener = (o, ov, nv) -> redraw();
+        this.shapes         = FXCollections.observableArrayList(shapes);
+        this.lightShapes    = FXCollections.observableArrayList();
+        this.scaleX         = 1.0;
+        this.scaleY         = 1.0;
+        this.canvasWidth    = Region.USE_PREF_SIZE;
+        this.canvasHeight   = Region.USE_PREF_SIZE;
+        this.rasterScaleX   = 1.0;
+        this.rasterScaleY   = 1.0;
+        this.resizeDelay    = DEFAULT_RESIZE_DELAY;
+        this.keepAspect     = keepAspect;
+        this.dirty          = true;
+        this.layers         = new TreeMap<>();
+        this.tracker        = new DirtyTracker(() -> requestRedraw(RenderMetrics.Cause.DIRTY_SHAPE));
+        this.painted        = new Painted[tracker.capacity()];
+        this.rasterCache    = new RasterCache();
+        this.effectCache    = new RasterCache();
+        this.redrawInterval = Duration.ZERO;
+        this.lodTolerance   = DEFAULT_LOD_TOLERANCE;
+        this.index          = new SpatialIndex<>();
+        this.lightIndex     = new SpatialIndex<>();
+        this.metrics        = new RenderMetrics();
+        this.batchRenderer  = new BatchRenderer();
+        this.redrawTimer    = new AnimationTimer() {
+            @Override public void handle(final long now) {
+                if (now - lastRedraw < (long) (redrawInterval.toMillis() * 1_000_000)) { return; }
+                lastRedraw = now;
+                redraw();
+            }
+        };
 
         initGraphics();
         registerListeners();
@@ -80,7 +153,8 @@ public class SvgNode extends Region {
         setPrefSize(PREFERRED_WIDTH, PREFERRED_HEIGHT);
 
         canvas = new Canvas(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
-        ctx    = canvas.getGraphicsContext2D();
+        layers.put(0, new Layer(0, canvas));
+        shapes.forEach(svgPath -> getLayer(svgPath.getLayer()));
 
         getChildren().setAll(canvas);
     }
@@ -88,17 +162,66 @@ public class SvgNode extends Region {
     private void registerListeners() {
         widthProperty().addListener(o -> resize());
         heightProperty().addListener(o -> resize());
+        canvas.widthProperty().addListener(o -> invalidateAll(RenderMetrics.Cause.RESIZE));
+        canvas.heightProperty().addListener(o -> invalidateAll(RenderMetrics.Cause.RESIZE));
         shapes.addListener((ListChangeListener<SvgPath>) c -> {
             while(c.next()) {
+                if (c.wasPermutated()) {
+                    index.invalidateOrder();
+                    layers.values().forEach(layer -> layer.fullRedraw = true);
+                    continue;
+                }
+                if (c.wasRemoved()) {
+                    c.getRemoved().forEach(svgPath -> {
+                        index.remove(svgPath);
+                        rasterCache.invalidate(svgPath);
+                        effectCache.invalidate(svgPath);
+                        final int slot = tracker.slotOf(svgPath);
+                        if (slot < 0) { return; }
+                        final Painted p = painted[slot];
+                        if (null != p) { p.layer.addDirtyArea(p.bounds); }
+                        if (tracker.detach(slot)) { painted[slot] = null; }
+                    });
+                }
+                if (c.wasAdded()) {
+                    c.getAddedSubList().forEach(svgPath -> {
+                        attach(svgPath);
+                        index.add(svgPath, svgPath.getBounds());
+                    });
+                    if (c.getTo() != c.getList().size()) { index.invalidateOrder(); }
+                }
+            }
+            requestRedraw(RenderMetrics.Cause.LIST_CHANGE);
+        });
+        shapes.forEach(svgPath -> {
+            attach(svgPath);
+            index.add(svgPath, svgPath.getBounds());
+        });
+        lightShapes.addListener((ListChangeListener<SvgShape>) c -> {
+            while(c.next()) {
+                if (c.wasPermutated()) {
+                    lightIndex.invalidateOrder();
+                    layers.values().forEach(layer -> layer.fullRedraw = true);
+                    continue;
+                }
+                if (c.wasRemoved()) {
+                    c.getRemoved().forEach(svgShape -> {
+                        final Bounds bounds = svgShape.getBounds();
+                        lightIndex.remove(svgShape);
+                        getLayer(svgShape.getLayer()).addDirtyArea(bounds);
+                    });
+                }
                 if (c.wasAdded()) {
-                    c.getAddedSubList().forEach(svgPath -> svgPath.dirtyProperty().addListener(dirtyListener));
-                } else if (c.wasRemoved()) {
-                    c.getRemoved().forEach(svgPath -> svgPath.dirtyProperty().removeListener(dirtyListener));
+                    c.getAddedSubList().forEach(svgShape -> {
+                        final Bounds bounds = svgShape.getBounds();
+                        lightIndex.add(svgShape, bounds);
+                        getLayer(svgShape.getLayer()).addDirtyArea(bounds);
+                    });
+                    if (c.getTo() != c.getList().size()) { lightIndex.invalidateOrder(); }
                 }
             }
-            redraw();
+            requestRedraw(RenderMetrics.Cause.LIST_CHANGE);
         });
-        shapes.forEach(svgPath -> svgPath.dirtyProperty().addListener(dirtyListener));
     }
 
 
@@ -112,10 +235,121 @@ public class SvgNode extends Region {
 
     public ObservableList<SvgPath> getShapes() { return shapes; }
 
-    public Dimension2D getCanvasDimension() { return new Dimension2D(canvas.getWidth(), canvas.getHeight()); }
+    /**
+     * Returns the lightweight shapes of this node. They are drawn on their
+     * layer below the SvgPaths of the same layer and are not picked. As
+     * SvgShapes are immutable, a shape is changed by replacing it in this
+     * list, e.g. getLightShapes().set(i, shape.withFill(argb)).
+     */
+    public ObservableList<SvgShape> getLightShapes() { return lightShapes; }
+
+    public SvgShapeStore getShapeStore() { return shapeStore; }
+    /**
+     * Sets the columnar store whose shapes are drawn on layer 0 below all
+     * other shapes. Changes of the store are repainted like changes of
+     * SvgPaths but without a listener per shape. The store's shapes are not
+     * picked. A store can only be shown by one node at a time.
+     * @param shapeStore the store to draw or null
+     */
+    public void setShapeStore(final SvgShapeStore shapeStore) {
+        if (shapeStore == this.shapeStore) { return; }
+        if (null != this.shapeStore) { this.shapeStore.setListener(null); }
+        this.shapeStore = shapeStore;
+        if (null != shapeStore) {
+            shapeStore.takeDirtyArea();
+            shapeStore.setListener(cause -> requestRedraw(cause));
+        }
+        layers.get(0).fullRedraw = true;
+        requestRedraw(RenderMetrics.Cause.LIST_CHANGE);
+    }
+
+    /**
+     * Adds a shape that is still being built (e.g. by SvgPathBuilder.buildAsync()).
+     * The position of the shape in the list of shapes is reserved immediately
+     * and the shape will be drawn as soon as it is ready. If the future
+     * completes exceptionally, the reserved position is removed again.
+     * @param futureShape the shape that will be added once it is completed
+     */
+    public void addShape(final CompletableFuture<SvgPath> futureShape) {
+        final SvgPath placeholder = new SvgPath();
+        placeholder.setVisible(false);
+        final int position = shapes.size();
+        shapes.add(placeholder);
+        futureShape.whenComplete((svgPath, throwable) -> {
+            final Runnable replace = () -> {
+                final int index = indexOf(placeholder, position);
+                if (index < 0) { return; }
+                if (null == throwable && null != svgPath) {
+                    shapes.set(index, svgPath);
+                } else {
+                    shapes.remove(index);
+                }
+            };
+            if (Platform.isFxApplicationThread()) {
+                replace.run();
+            } else {
+                Platform.runLater(replace);
+            }
+        });
+    }
+    public void addShapes(final List<CompletableFuture<SvgPath>> futureShapes) {
+        runBatch(() -> futureShapes.forEach(futureShape -> addShape(futureShape)));
+    }
+
+    /**
+     * Returns the index of the given shape by searching outwards from the
+     * index it was added at, so the cost only depends on the number of
+     * shapes that have been added or removed in front of it since.
+     */
+    private int indexOf(final SvgPath svgPath, final int position) {
+        final int size = shapes.size();
+        for (int distance = 0 ; position - distance >= 0 || position + distance < size ; distance++) {
+            final int after  = position + distance;
+            final int before = position - distance;
+            if (after < size && shapes.get(after) == svgPath) { return after; }
+            if (distance > 0 && before >= 0 && before < size && shapes.get(before) == svgPath) { return before; }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the size of the canvas in the coordinates of the shapes. The
+     * canvas is scaled to the size of the node.
+     */
+    public Dimension2D getCanvasDimension() { return new Dimension2D(canvasWidth, canvasHeight); }
     public void setCanvasDimension(final double width, final double height) {
-        canvas.setWidth(width);
-        canvas.setHeight(height);
+        canvasWidth  = width;
+        canvasHeight = height;
+        layers.values().forEach(layer -> setRasterSize(layer.canvas));
+    }
+
+    /**
+     * If enabled, the canvas is rendered at the resolution of the node
+     * instead of being scaled, so enlarged nodes stay sharp. While the node
+     * is being resized (e.g. by dragging the window), the last rendering is
+     * shown scaled and the node is only rendered again at the new
+     * resolution when its size has not changed for the resize delay.
+     */
+    public boolean isCrispResize() { return crispResize; }
+    public void setCrispResize(final boolean crispResize) {
+        if (this.crispResize == crispResize) { return; }
+        this.crispResize = crispResize;
+        if (crispResize) {
+            settleRasterScale();
+        } else {
+            if (null != resizeSettle) { resizeSettle.stop(); }
+            setRasterScale(1, 1);
+        }
+    }
+
+    /**
+     * Returns the time the size of the node has to stay unchanged before the
+     * node is rendered at its new resolution in crisp resize mode.
+     */
+    public Duration getResizeDelay() { return resizeDelay; }
+    public void setResizeDelay(final Duration resizeDelay) {
+        this.resizeDelay = null == resizeDelay ? Duration.ZERO : resizeDelay;
+        if (null != resizeSettle) { resizeSettle.setDuration(this.resizeDelay); }
     }
 
     public boolean getKeepAspect() { return keepAspect; }
@@ -124,6 +358,287 @@ public class SvgNode extends Region {
         resize();
     }
 
+    /**
+     * Returns the minimum time between two redraws. With the default of
+     * Duration.ZERO the node redraws at most once per pulse.
+     */
+    public Duration getRedrawInterval() { return redrawInterval; }
+    public void setRedrawInterval(final Duration redrawInterval) {
+        this.redrawInterval = null == redrawInterval ? Duration.ZERO : redrawInterval;
+    }
+
+    /**
+     * If enabled, shapes that have the cache hint set are rendered into an
+     * image at the current scale of the node once and drawn from that image
+     * until they get dirty or the scale changes.
+     */
+    public boolean isRasterCacheEnabled() { return rasterCacheEnabled; }
+    public void setRasterCacheEnabled(final boolean rasterCacheEnabled) {
+        this.rasterCacheEnabled = rasterCacheEnabled;
+        if (!rasterCacheEnabled) {
+            rasterCache.clear();
+            if (!effectCacheEnabled) { rasterCanvas = null; }
+        }
+    }
+
+    /**
+     * If enabled, shapes with an effect are rendered into an image at the
+     * current scale of the node once and drawn from that image until their
+     * path, paints, effect or the scale change, so the effect is not
+     * computed on every redraw. The images are kept in their own cache
+     * whose budget can be set with getEffectCache().setBudget(). Changes of
+     * the properties of an effect are not tracked, set a new effect instead.
+     */
+    public boolean isEffectCacheEnabled() { return effectCacheEnabled; }
+    public void setEffectCacheEnabled(final boolean effectCacheEnabled) {
+        this.effectCacheEnabled = effectCacheEnabled;
+        if (!effectCacheEnabled) {
+            effectCache.clear();
+            if (!rasterCacheEnabled) { rasterCanvas = null; }
+        }
+    }
+
+    /**
+     * Returns the cache of the rendered effects of this node which can be
+     * used to adjust the memory budget. Its hits are the effect renders that
+     * were avoided (see also RenderMetrics.getEffectRendersAvoided()).
+     */
+    public RasterCache getEffectCache() { return effectCache; }
+
+    /**
+     * The maximum deviation in pixels between the drawn and the actual
+     * geometry of the shapes. When the node is scaled down, the shapes are
+     * drawn with simplified geometries within this tolerance (see
+     * SvgGeometry.getLevelOfDetail()). A tolerance of 0 switches level of
+     * detail off.
+     */
+    public double getLodTolerance() { return lodTolerance; }
+    public void setLodTolerance(final double lodTolerance) {
+        if (lodTolerance < 0) { throw new IllegalArgumentException("Tolerance must not be negative"); }
+        if (this.lodTolerance == lodTolerance) { return; }
+        this.lodTolerance = lodTolerance;
+        rasterCache.clear();
+        effectCache.clear();
+        invalidateAll();
+    }
+
+    /**
+     * If enabled, the shapes are drawn without saving and restoring the
+     * state of the context for each shape. The state is only changed when
+     * the next shape has a different style, and adjacent shapes with the
+     * same style that do not overlap are filled and stroked together.
+     * This pays off for scenes with many shapes that share a few styles.
+     * SvgShapes and the shape store are always drawn this way.
+     */
+    public boolean isBatchedRendering() { return batchedRendering; }
+    public void setBatchedRendering(final boolean batchedRendering) {
+        if (this.batchedRendering == batchedRendering) { return; }
+        this.batchedRendering = batchedRendering;
+        invalidateAll();
+    }
+
+    public Rectangle2D getViewport() { return viewport; }
+    /**
+     * Restricts drawing to the shapes that intersect the given rectangle,
+     * e.g. the part of the node that is visible in a ScrollPane. The
+     * rectangle is given in the coordinates of the shapes, which are the
+     * coordinates of the canvas. The shapes are looked up in a spatial
+     * index, so the time to redraw depends on the number of shapes in the
+     * viewport and not on the number of all shapes. Only the area that
+     * becomes visible is repainted when the viewport is moved.
+     * @param viewport the visible area or null to draw all shapes
+     */
+    public void setViewport(final Rectangle2D viewport) {
+        final Rectangle2D oldViewport = this.viewport;
+        this.viewport = viewport;
+        if (null == oldViewport) { return; }
+        if (null == viewport) {
+            invalidateAll(RenderMetrics.Cause.VIEWPORT);
+            return;
+        }
+        final Bounds exposed = getExposedArea(oldViewport, viewport);
+        if (null != exposed) {
+            layers.values().forEach(layer -> layer.addDirtyArea(exposed));
+            requestRedraw(RenderMetrics.Cause.VIEWPORT);
+        }
+    }
+
+    /**
+     * Returns the bounds of the part of the new viewport that is not
+     * covered by the old one or null if there is no such part.
+     */
+    private static Bounds getExposedArea(final Rectangle2D oldViewport, final Rectangle2D newViewport) {
+        if (oldViewport.contains(newViewport)) { return null; }
+        if (!oldViewport.intersects(newViewport)) { return toBounds(newViewport); }
+        double minX = newViewport.getMinX();
+        double maxX = newViewport.getMaxX();
+        double minY = newViewport.getMinY();
+        double maxY = newViewport.getMaxY();
+        final boolean coveredX = oldViewport.getMinX() <= minX && oldViewport.getMaxX() >= maxX;
+        final boolean coveredY = oldViewport.getMinY() <= minY && oldViewport.getMaxY() >= maxY;
+        // Moved in one direction only, so the exposed area is a strip
+        if (coveredX) {
+            if (oldViewport.getMinY() <= minY) { minY = oldViewport.getMaxY(); } else if (oldViewport.getMaxY() >= maxY) { maxY = oldViewport.getMinY(); }
+        } else if (coveredY) {
+            if (oldViewport.getMinX() <= minX) { minX = oldViewport.getMaxX(); } else if (oldViewport.getMaxX() >= maxX) { maxX = oldViewport.getMinX(); }
+        }
+        return new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private static Bounds toBounds(final Rectangle2D rectangle) {
+        return new BoundingBox(rectangle.getMinX(), rectangle.getMinY(), rectangle.getWidth(), rectangle.getHeight());
+    }
+
+    /**
+     * Returns the raster cache of this node which can be used to adjust the
+     * memory budget and to read the hit and miss counters.
+     */
+    public RasterCache getRasterCache() { return rasterCache; }
+
+    /**
+     * Returns the topmost visible shape whose fill or stroke covers the given
+     * point. The point is given in the coordinates of this node and is
+     * mapped to the coordinates of the shapes with the current scale and
+     * translation, so it can be taken directly from a mouse event on the
+     * node. The candidates are looked up in the spatial index and tested
+     * exactly, respecting the fill rule and the stroke of each shape.
+     * @param x the x coordinate in the coordinate system of this node
+     * @param y the y coordinate in the coordinate system of this node
+     * @return the topmost shape at the given point or null
+     */
+    public SvgPath pick(final double x, final double y) {
+        final Point2D point = toCanvas(x, y);
+        final double  px    = point.getX();
+        final double  py    = point.getY();
+        if (null != viewport && !viewport.contains(px, py)) { return null; }
+        final double        tolerance  = getPickTolerance();
+        final List<SvgPath> candidates = index.query(px, py, px, py, shapes);
+        for (Integer layerIndex : layers.descendingKeySet()) {
+            for (int i = candidates.size() - 1 ; i >= 0 ; i--) {
+                final SvgPath svgPath = candidates.get(i);
+                if (svgPath.getLayer() == layerIndex && HitTester.contains(svgPath, px, py, tolerance)) { return svgPath; }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all visible shapes whose fill or stroke covers any part of the
+     * given area, the topmost shape first. The area is given in the
+     * coordinates of this node like in pick(x, y).
+     * @param area the area in the coordinate system of this node
+     * @return the shapes in the given area, the topmost shape first
+     */
+    public List<SvgPath> pickAll(final Rectangle2D area) {
+        final Point2D min  = toCanvas(area.getMinX(), area.getMinY());
+        final Point2D max  = toCanvas(area.getMaxX(), area.getMaxY());
+        double        minX = Math.min(min.getX(), max.getX());
+        double        minY = Math.min(min.getY(), max.getY());
+        double        maxX = Math.max(min.getX(), max.getX());
+        double        maxY = Math.max(min.getY(), max.getY());
+        if (null != viewport) {
+            minX = Math.max(minX, viewport.getMinX());
+            minY = Math.max(minY, viewport.getMinY());
+            maxX = Math.min(maxX, viewport.getMaxX());
+            maxY = Math.min(maxY, viewport.getMaxY());
+            if (minX > maxX || minY > maxY) { return new ArrayList<>(); }
+        }
+        final double        tolerance  = getPickTolerance();
+        final List<SvgPath> candidates = index.query(minX, minY, maxX, maxY, shapes);
+        final List<SvgPath> picked     = new ArrayList<>();
+        // Shapes that are in the list more than once are tested and returned once
+        final Set<SvgPath>  tested     = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Integer layerIndex : layers.descendingKeySet()) {
+            for (int i = candidates.size() - 1 ; i >= 0 ; i--) {
+                final SvgPath svgPath = candidates.get(i);
+                if (svgPath.getLayer() != layerIndex || !tested.add(svgPath)) { continue; }
+                if (HitTester.intersects(svgPath, minX, minY, maxX, maxY, tolerance)) { picked.add(svgPath); }
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * Maps the given point from the coordinates of this node to the
+     * coordinates of the shapes.
+     */
+    private Point2D toCanvas(final double x, final double y) {
+        final Point2D point = canvas.parentToLocal(x, y);
+        return new Point2D(point.getX() / rasterScaleX, point.getY() / rasterScaleY);
+    }
+
+    /**
+     * Returns the flattening tolerance for hit tests in the coordinates of
+     * the shapes, which is a tenth of a pixel on screen.
+     */
+    private double getPickTolerance() {
+        final double scale = getLodScale();
+        return scale > 0 ? PICK_TOLERANCE / scale : PICK_TOLERANCE;
+    }
+
+    /**
+     * Returns the indices of all layers in ascending order. Each layer is
+     * drawn on its own canvas and layers with a higher index are drawn on
+     * top of layers with a lower index.
+     */
+    public List<Integer> getLayerIndices() { return List.copyOf(layers.keySet()); }
+
+    /**
+     * Runs the given action and suppresses all repaints that would be
+     * triggered by it. If any shape was changed in the action, the node
+     * will be redrawn once afterwards.
+     * @param action the action that modifies the shapes of this node
+     */
+    public void runBatch(final Runnable action) {
+        batchDepth++;
+        try {
+            action.run();
+        } finally {
+            batchDepth--;
+        }
+        if (0 == batchDepth && dirty) { scheduleRedraw(); }
+    }
+
+    /**
+     * Returns the counters and timings of the redraws of this node. The
+     * redraws and the drawing of the single shapes are also reported as
+     * JDK Flight Recorder events (eu.hansolo.fx.svgnode.Redraw and
+     * eu.hansolo.fx.svgnode.ShapeDraw).
+     */
+    public RenderMetrics getRenderMetrics() { return metrics; }
+
+    private void requestRedraw(final RenderMetrics.Cause cause) {
+        redrawCauses |= RenderMetrics.mask(cause);
+        scheduleRedraw();
+    }
+
+    private void scheduleRedraw() {
+        dirty = true;
+        if (batchDepth > 0 || redrawScheduled) { return; }
+        redrawScheduled = true;
+        redrawTimer.start();
+    }
+
+    /**
+     * Lets the given shape report its changes to this node.
+     */
+    private void attach(final SvgPath svgPath) {
+        final int slot = tracker.attach(svgPath);
+        if (slot >= painted.length) { painted = Arrays.copyOf(painted, tracker.capacity()); }
+    }
+
+    private Layer getLayer(final int index) {
+        Layer layer = layers.get(index);
+        if (null == layer) {
+            final Canvas layerCanvas = new Canvas(canvas.getWidth(), canvas.getHeight());
+            layer = new Layer(index, layerCanvas);
+            layers.put(index, layer);
+            layoutLayer(layerCanvas);
+            getChildren().setAll(layers.values().stream().map(l -> l.canvas).toArray(Canvas[]::new));
+        }
+        return layer;
+    }
+
 
     // ******************** Resizing ******************************************
     private void resize() {
@@ -132,10 +647,12 @@ public class SvgNode extends Region {
         size   = width < height ? width : height;
 
         if (width > 0 && height > 0) {
-            if (canvas.getWidth() == Region.USE_PREF_SIZE) { canvas.setWidth(width); }
-            if (canvas.getHeight() == Region.USE_PREF_SIZE) { canvas.setHeight(height); }
-            if (canvas.getWidth() != Region.USE_PREF_SIZE && canvas.getHeight() != Region.USE_PREF_SIZE) {
-                aspectRatio = canvas.getHeight() / canvas.getWidth();
+            if (canvasWidth == Region.USE_PREF_SIZE || canvasHeight == Region.USE_PREF_SIZE) {
+                setCanvasDimension(canvasWidth == Region.USE_PREF_SIZE ? width : canvasWidth,
+                                   canvasHeight == Region.USE_PREF_SIZE ? height : canvasHeight);
+            }
+            if (canvasWidth != Region.USE_PREF_SIZE && canvasHeight != Region.USE_PREF_SIZE) {
+                aspectRatio = canvasHeight / canvasWidth;
             }
 
             if (keepAspect) {
@@ -146,26 +663,363 @@ public class SvgNode extends Region {
                 }
             }
 
-            scaleX = width / canvas.getWidth();
-            scaleY = height / canvas.getHeight();
+            final double lastScaleX = scaleX;
+            final double lastScaleY = scaleY;
+
+            scaleX = width / canvasWidth;
+            scaleY = height / canvasHeight;
 
-            canvas.relocate((getWidth() - width) * 0.5, (getHeight() - height) * 0.5);
+            if (crispResize) {
+                // Show the last rendering scaled until the size settles
+                if (lastScaleX != scaleX || lastScaleY != scaleY) { scheduleRasterScale(); }
+            } else {
+                // Cached images have the resolution of the canvas that does not change with the scale,
+                // but they are drawn with the level of detail that changes with every power of two
+                if (lodTolerance > 0 && Math.getExponent(Math.max(lastScaleX, lastScaleY)) != Math.getExponent(getLodScale())) {
+                    rasterCache.clear();
+                    effectCache.clear();
+                    invalidateAll(RenderMetrics.Cause.RESIZE);
+                }
+            }
 
-            canvas.setScaleX(scaleX);
-            canvas.setScaleY(scaleY);
-            canvas.setTranslateX((canvas.getWidth() * scaleX - canvas.getWidth()) / 2);
-            canvas.setTranslateY((canvas.getHeight() * scaleY - canvas.getHeight()) / 2);
+            layers.values().forEach(layer -> layoutLayer(layer.canvas));
 
             if (dirty) { redraw(); }
         }
     }
 
-    private void redraw() {
-        ctx.clearRect(0, 0, width, height);
-        shapes.forEach(svgPath -> {
-            svgPath.draw(ctx);
-            svgPath.dirtyReset();
+    private void scheduleRasterScale() {
+        if (resizeDelay.lessThanOrEqualTo(Duration.ZERO)) {
+            settleRasterScale();
+            return;
+        }
+        if (null == resizeSettle) {
+            resizeSettle = new PauseTransition(resizeDelay);
+            resizeSettle.setOnFinished(e -> settleRasterScale());
+        }
+        resizeSettle.playFromStart();
+    }
+
+    private void settleRasterScale() {
+        if (scaleX > 0 && scaleY > 0) { setRasterScale(scaleX, scaleY); }
+    }
+
+    /**
+     * Sets the resolution of the canvases relative to the coordinates of the
+     * shapes and renders them again.
+     */
+    private void setRasterScale(final double rasterScaleX, final double rasterScaleY) {
+        double sx = rasterScaleX;
+        double sy = rasterScaleY;
+        if (canvasWidth > 0 && canvasHeight > 0) {
+            sx = Math.min(sx, MAXIMUM_RASTER_SIZE / canvasWidth);
+            sy = Math.min(sy, MAXIMUM_RASTER_SIZE / canvasHeight);
+        }
+        if (this.rasterScaleX == sx && this.rasterScaleY == sy) { return; }
+        this.rasterScaleX = sx;
+        this.rasterScaleY = sy;
+        rasterCache.clear();
+        effectCache.clear();
+        layers.values().forEach(layer -> {
+            setRasterSize(layer.canvas);
+            layoutLayer(layer.canvas);
         });
+        invalidateAll(RenderMetrics.Cause.RESIZE);
+    }
+
+    private void setRasterSize(final Canvas layerCanvas) {
+        layerCanvas.setWidth(canvasWidth > 0 ? Math.ceil(canvasWidth * rasterScaleX) : canvasWidth);
+        layerCanvas.setHeight(canvasHeight > 0 ? Math.ceil(canvasHeight * rasterScaleY) : canvasHeight);
+    }
+
+    private void layoutLayer(final Canvas layerCanvas) {
+        layerCanvas.relocate((getWidth() - width) * 0.5, (getHeight() - height) * 0.5);
+
+        layerCanvas.setScaleX(scaleX / rasterScaleX);
+        layerCanvas.setScaleY(scaleY / rasterScaleY);
+        layerCanvas.setTranslateX((layerCanvas.getWidth() * layerCanvas.getScaleX() - layerCanvas.getWidth()) / 2);
+        layerCanvas.setTranslateY((layerCanvas.getHeight() * layerCanvas.getScaleY() - layerCanvas.getHeight()) / 2);
+    }
+
+
+    // ******************** Drawing *******************************************
+    /**
+     * Adds the area that was covered by the given shape in the last redraw
+     * and the area that it covers now to the regions of the affected layers
+     * that need a repaint.
+     */
+    private void invalidate(final int slot) {
+        final SvgPath svgPath = tracker.get(slot);
+        rasterCache.invalidate(svgPath);
+        effectCache.invalidate(svgPath);
+        final Painted p = painted[slot];
+        if (null != p) { p.layer.addDirtyArea(p.bounds); }
+        final Bounds bounds = svgPath.getBounds();
+        index.update(svgPath, bounds);
+        if (svgPath.isVisible()) { getLayer(svgPath.getLayer()).addDirtyArea(bounds); }
+    }
+
+    void invalidateAll() { invalidateAll(RenderMetrics.Cause.SETTINGS); }
+    private void invalidateAll(final RenderMetrics.Cause cause) {
+        layers.values().forEach(layer -> layer.fullRedraw = true);
+        requestRedraw(cause);
+    }
+
+    void redraw() {
+        if (redrawScheduled) {
+            redrawTimer.stop();
+            redrawScheduled = false;
+        }
+
+        final RenderEvents.RedrawEvent event = new RenderEvents.RedrawEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        shapesDrawn = 0;
+        shapeTiming = metrics.isShapeTimingEnabled() || new RenderEvents.ShapeDrawEvent().isEnabled();
+
+        boolean fullRedraw = false;
+        for (int slot = tracker.nextDirty(0) ; slot >= 0 ; slot = tracker.nextDirty(slot + 1)) { invalidate(slot); }
+        if (null != shapeStore) {
+            final Bounds storeArea = shapeStore.takeDirtyArea();
+            if (null != storeArea) { layers.get(0).addDirtyArea(storeArea); }
+        }
+        for (Layer layer : layers.values()) {
+            fullRedraw |= layer.fullRedraw;
+            final GraphicsContext ctx = layer.ctx;
+            // The shapes are drawn in their own coordinates at the resolution of the canvas
+            ctx.setTransform(rasterScaleX, 0, 0, rasterScaleY, 0, 0);
+            if (layer.fullRedraw) {
+                ctx.clearRect(0, 0, layer.canvas.getWidth() / rasterScaleX, layer.canvas.getHeight() / rasterScaleY);
+                final List<SvgShape> visibleLightShapes = null == viewport ? lightShapes : lightIndex.query(viewport.getMinX(), viewport.getMinY(), viewport.getMaxX(), viewport.getMaxY(), lightShapes);
+                final List<SvgPath>  visibleShapes      = null == viewport ? shapes : index.query(viewport.getMinX(), viewport.getMinY(), viewport.getMaxX(), viewport.getMaxY(), shapes);
+                batchRenderer.begin(ctx);
+                if (null == viewport) {
+                    drawShapeStore(layer, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+                } else {
+                    drawShapeStore(layer, viewport.getMinX(), viewport.getMinY(), viewport.getMaxX(), viewport.getMaxY());
+                }
+                for (SvgShape svgShape : visibleLightShapes) {
+                    if (svgShape.getLayer() == layer.index) { drawShape(layer, svgShape); }
+                }
+                if (!batchedRendering) { batchRenderer.end(); }
+                for (SvgPath svgPath : visibleShapes) {
+                    if (svgPath.getLayer() == layer.index) { drawShape(layer, svgPath); }
+                }
+                if (batchedRendering) { batchRenderer.end(); }
+            } else if (layer.hasDirtyArea()) {
+                // Snap to whole pixels and add one pixel for anti aliasing
+                double minX = Helper.clamp(0, canvasWidth, Math.floor(layer.dirtyMinX) - 1);
+                double minY = Helper.clamp(0, canvasHeight, Math.floor(layer.dirtyMinY) - 1);
+                double maxX = Helper.clamp(0, canvasWidth, Math.ceil(layer.dirtyMaxX) + 1);
+                double maxY = Helper.clamp(0, canvasHeight, Math.ceil(layer.dirtyMaxY) + 1);
+                if (null != viewport) {
+                    // Everything outside of the viewport is repainted when it becomes visible
+                    minX = Math.max(minX, Math.floor(viewport.getMinX()));
+                    minY = Math.max(minY, Math.floor(viewport.getMinY()));
+                    maxX = Math.min(maxX, Math.ceil(viewport.getMaxX()));
+                    maxY = Math.min(maxY, Math.ceil(viewport.getMaxY()));
+                }
+                if (minX < maxX && minY < maxY) {
+                    ctx.save();
+                    ctx.beginPath();
+                    ctx.rect(minX, minY, maxX - minX, maxY - minY);
+                    ctx.clip();
+                    ctx.clearRect(minX, minY, maxX - minX, maxY - minY);
+                    batchRenderer.begin(ctx);
+                    drawShapeStore(layer, minX, minY, maxX, maxY);
+                    for (SvgShape svgShape : lightIndex.query(minX, minY, maxX, maxY, lightShapes)) {
+                        if (svgShape.getLayer() == layer.index) { drawShape(layer, svgShape); }
+                    }
+                    if (!batchedRendering) { batchRenderer.end(); }
+                    for (SvgPath svgPath : index.query(minX, minY, maxX, maxY, shapes)) {
+                        if (svgPath.getLayer() == layer.index) { drawShape(layer, svgPath); }
+                    }
+                    if (batchedRendering) { batchRenderer.end(); }
+                    ctx.restore();
+                }
+            }
+            layer.reset();
+        }
+        // Shapes that have not been painted (e.g. invisible or outside of the canvas)
+        for (int slot = tracker.nextDirty(0) ; slot >= 0 ; slot = tracker.nextDirty(slot + 1)) {
+            final SvgPath svgPath = tracker.get(slot);
+            if (svgPath.isDirty()) { updatePainted(getLayer(svgPath.getLayer()), svgPath); }
+        }
+        tracker.clearDirty();
         dirty = false;
+
+        final int shapesSkipped = shapes.size() + lightShapes.size() + (null == shapeStore ? 0 : shapeStore.size()) - shapesDrawn;
+        metrics.recordRedraw(redrawCauses, shapesDrawn, shapesSkipped, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.causes        = RenderMetrics.toString(redrawCauses);
+            event.shapesDrawn   = shapesDrawn;
+            event.shapesSkipped = shapesSkipped;
+            event.layers        = layers.size();
+            event.fullRedraw    = fullRedraw;
+            event.commit();
+        }
+        redrawCauses = 0;
+    }
+
+    private void drawShape(final Layer layer, final SvgPath svgPath) {
+        if (!svgPath.isVisible()) {
+            updatePainted(layer, svgPath);
+            return;
+        }
+        final RasterCache cache  = getCache(svgPath);
+        final boolean     cached = null != cache;
+        if (shapeTiming) {
+            final RenderEvents.ShapeDrawEvent event = new RenderEvents.ShapeDrawEvent();
+            event.begin();
+            final long start = System.nanoTime();
+            drawShape(layer.ctx, svgPath, cache);
+            final long nanos = System.nanoTime() - start;
+            if (metrics.isShapeTimingEnabled()) { metrics.recordShape(nanos); }
+            if (event.shouldCommit()) {
+                event.layer    = layer.index;
+                event.commands = svgPath.getGeometry().getCommandCount();
+                event.cached   = cached;
+                event.commit();
+            }
+        } else {
+            drawShape(layer.ctx, svgPath, cache);
+        }
+        shapesDrawn++;
+        updatePainted(layer, svgPath);
+    }
+    private void drawShapeStore(final Layer layer, final double minX, final double minY, final double maxX, final double maxY) {
+        if (null == shapeStore || 0 != layer.index) { return; }
+        shapesDrawn += shapeStore.draw(batchRenderer, minX, minY, maxX, maxY, getLodScale(), lodTolerance);
+    }
+    private void drawShape(final Layer layer, final SvgShape svgShape) {
+        // Light shapes only have colors and no effects, batching never changes how they look
+        batchRenderer.draw(svgShape, svgShape.getGeometry().getLevelOfDetail(getLodScale(), lodTolerance));
+        shapesDrawn++;
+    }
+    private void drawShape(final GraphicsContext ctx, final SvgPath svgPath, final RasterCache cache) {
+        if (batchedRendering) {
+            if (null != cache) {
+                // Images are drawn with the effect of the context
+                batchRenderer.clearEffect();
+                drawCached(ctx, svgPath, cache);
+            } else {
+                batchRenderer.draw(svgPath, svgPath.getGeometry(getLodScale(), lodTolerance));
+            }
+        } else if (null != cache) {
+            drawCached(ctx, svgPath, cache);
+        } else {
+            svgPath.draw(ctx, getLodScale(), lodTolerance);
+        }
+    }
+
+    /**
+     * Returns the cache the given shape is drawn from or null if it is drawn
+     * directly. Shapes with the cache hint cover their effect as well.
+     */
+    private RasterCache getCache(final SvgPath svgPath) {
+        if (rasterCacheEnabled && svgPath.isCache()) { return rasterCache; }
+        if (effectCacheEnabled && null != svgPath.getEffect()) { return effectCache; }
+        return null;
+    }
+
+    private void drawCached(final GraphicsContext ctx, final SvgPath svgPath, final RasterCache cache) {
+        // The image is rasterized at the resolution of the canvas, which differs from the scale while resizing
+        final Bounds bounds = svgPath.getBounds();
+        final double minX   = Math.floor(bounds.getMinX() * rasterScaleX);
+        final double minY   = Math.floor(bounds.getMinY() * rasterScaleY);
+        final double width  = Math.ceil(bounds.getMaxX() * rasterScaleX) - minX;
+        final double height = Math.ceil(bounds.getMaxY() * rasterScaleY) - minY;
+        if (width <= 0 || height <= 0 || !cache.fits(width, height)) {
+            svgPath.draw(ctx, getLodScale(), lodTolerance);
+            return;
+        }
+
+        WritableImage image = cache.get(svgPath, rasterScaleX, rasterScaleY);
+        if (effectCache == cache) { metrics.recordEffectRender(null != image); }
+        if (null == image) {
+            if (null == rasterCanvas) { rasterCanvas = new Canvas(); }
+            rasterCanvas.setWidth(width);
+            rasterCanvas.setHeight(height);
+            final GraphicsContext rasterCtx = rasterCanvas.getGraphicsContext2D();
+            rasterCtx.clearRect(0, 0, width, height);
+            rasterCtx.save();
+            rasterCtx.translate(-minX, -minY);
+            rasterCtx.scale(rasterScaleX, rasterScaleY);
+            svgPath.draw(rasterCtx, getLodScale(), lodTolerance);
+            rasterCtx.restore();
+
+            final SnapshotParameters parameters = new SnapshotParameters();
+            parameters.setFill(Color.TRANSPARENT);
+            image = rasterCanvas.snapshot(parameters, new WritableImage((int) width, (int) height));
+            cache.put(svgPath, image, rasterScaleX, rasterScaleY);
+        }
+        ctx.drawImage(image, minX / rasterScaleX, minY / rasterScaleY, width / rasterScaleX, height / rasterScaleY);
+    }
+
+    /**
+     * Returns the scale that determines the level of detail, the larger
+     * scale has the larger deviation.
+     */
+    private double getLodScale() { return Math.max(scaleX, scaleY); }
+
+    private void updatePainted(final Layer layer, final SvgPath svgPath) {
+        final int slot = tracker.slotOf(svgPath);
+        if (slot >= 0) { painted[slot] = svgPath.isVisible() ? new Painted(layer, svgPath.getBounds()) : null; }
+        svgPath.dirtyReset();
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Layer {
+        final int             index;
+        final Canvas          canvas;
+        final GraphicsContext ctx;
+        boolean               fullRedraw;
+        double                dirtyMinX;
+        double                dirtyMinY;
+        double                dirtyMaxX;
+        double                dirtyMaxY;
+
+
+        Layer(final int index, final Canvas canvas) {
+            this.index      = index;
+            this.canvas     = canvas;
+            this.ctx        = canvas.getGraphicsContext2D();
+            this.fullRedraw = true;
+        }
+
+
+        boolean hasDirtyArea() { return dirtyMinX < dirtyMaxX && dirtyMinY < dirtyMaxY; }
+
+        void addDirtyArea(final Bounds bounds) {
+            if (bounds.isEmpty()) { return; }
+            if (hasDirtyArea()) {
+                dirtyMinX = Math.min(dirtyMinX, bounds.getMinX());
+                dirtyMinY = Math.min(dirtyMinY, bounds.getMinY());
+                dirtyMaxX = Math.max(dirtyMaxX, bounds.getMaxX());
+                dirtyMaxY = Math.max(dirtyMaxY, bounds.getMaxY());
+            } else {
+                dirtyMinX = bounds.getMinX();
+                dirtyMinY = bounds.getMinY();
+                dirtyMaxX = bounds.getMaxX();
+                dirtyMaxY = bounds.getMaxY();
+            }
+        }
+
+        void reset() {
+            dirtyMinX  = dirtyMinY = dirtyMaxX = dirtyMaxY = 0;
+            fullRedraw = false;
+        }
+    }
+
+    private static class Painted {
+        final Layer  layer;
+        final Bounds bounds;
+
+
+        Painted(final Layer layer, final Bounds bounds) {
+            this.layer  = layer;
+            this.bounds = bounds;
+        }
     }
 }
@@ -20,11 +20,15 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.DoublePropertyBase;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.IntegerPropertyBase;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ObjectPropertyBase;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.property.StringPropertyBase;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.Effect;
 import javafx.scene.paint.Color;
@@ -33,27 +37,43 @@ import javafx.scene.shape.FillRule;
 import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.shape.StrokeLineJoin;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
 
 public class SvgPath {
-    private String                         _path;
-    private StringProperty                 path;
-    private Paint                          _fill;
-    private ObjectProperty<Paint>          fill;
-    private Paint                          _stroke;
-    private ObjectProperty<Paint>          stroke;
-    private double                         _strokeWidth;
-    private DoubleProperty                 strokeWidth;
-    private FillRule                       _fillRule;
-    private ObjectProperty<FillRule>       fillRule;
-    private Effect                         _effect;
-    private ObjectProperty<Effect>         effect;
-    private boolean                        _visible;
-    private BooleanProperty                visible;
-    private StrokeLineJoin                 _lineJoin;
-    private ObjectProperty<StrokeLineJoin> lineJoin;
-    private StrokeLineCap                  _lineCap;
-    private ObjectProperty<StrokeLineCap>  lineCap;
-    private BooleanProperty                dirty;
+    private static final double                         MITER_LIMIT = 10;
+    private              String                         _path;
+    private              StringProperty                 path;
+    private              Paint                          _fill;
+    private              ObjectProperty<Paint>          fill;
+    private              Paint                          _stroke;
+    private              ObjectProperty<Paint>          stroke;
+    private              double                         _strokeWidth;
+    private              DoubleProperty                 strokeWidth;
+    private              FillRule                       _fillRule;
+    private              ObjectProperty<FillRule>       fillRule;
+    private              Effect                         _effect;
+    private              ObjectProperty<Effect>         effect;
+    private              boolean                        _visible;
+    private              BooleanProperty                visible;
+    private              StrokeLineJoin                 _lineJoin;
+    private              ObjectProperty<StrokeLineJoin> lineJoin;
+    private              StrokeLineCap                  _lineCap;
+    private              ObjectProperty<StrokeLineCap>  lineCap;
+    private              int                            _layer;
+    private              IntegerProperty                layer;
+    private              boolean                        _cache;
+    private              BooleanProperty                cache;
+    private              boolean                        _lod;
+    private              BooleanProperty                lod;
+    private              boolean                        _dirty;
+    private              BooleanProperty                dirty;
+    private              DirtyTracker[]                 trackers;
+    private              int[]                          slots;
+    private              SvgGeometry                    geometry;
+    private              boolean                        settingGeometry;
 
 
     // ******************* Constructors ***************************************
@@ -61,7 +81,8 @@ public class SvgPath {
         this("", Color.BLACK, Color.BLACK, 1.0, FillRule.NON_ZERO, null, true);
     }
     public SvgPath(final String path, final Paint fill, final Paint stroke, final double strokeWidth, final FillRule fillRule, final Effect effect, final boolean visible) {
-        _path        = path;
+        geometry     = GeometryCache.get(path);
+        _path        = null == geometry.getSource() || geometry.isEmpty() ? path : geometry.getSource();
         _fill        = fill;
         _stroke      = stroke;
         _strokeWidth = Helper.clamp(0, Double.MAX_VALUE, strokeWidth);
@@ -70,10 +91,7 @@ public class SvgPath {
         _visible     = visible;
         _lineJoin    = StrokeLineJoin.MITER;
         _lineCap     = StrokeLineCap.SQUARE;
-        dirty        = new BooleanPropertyBase(false) {
-            @Override public Object getBean() { return SvgPath.this; }
-            @Override public String getName() { return "dirty"; }
-        };
+        _lod         = true;
     }
 
 
@@ -81,8 +99,10 @@ public class SvgPath {
     public String getPath() { return null == path ? _path : path.get(); }
     public void setPath(final String path) {
         if (null == this.path) {
-            _path = path;
-            dirty.set(true);
+            if (null == path ? null == _path && geometry.isEmpty() : path.equals(_path)) { return; }
+            geometry = GeometryCache.get(path);
+            _path    = null == geometry.getSource() || geometry.isEmpty() ? path : geometry.getSource();
+            markDirty();
         } else {
             this.path.set(path);
         }
@@ -90,7 +110,25 @@ public class SvgPath {
     public StringProperty pathProperty() {
         if (null == path) {
             path = new StringPropertyBase(_path) {
-                @Override protected void invalidated() { dirty.set(true); }
+                private SvgGeometry compiled;
+
+                @Override public void set(final String path) {
+                    if (settingGeometry || isBound()) {
+                        super.set(path);
+                        return;
+                    }
+                    // Compile before the value changes, so that an invalid path leaves the shape as it is
+                    compiled = GeometryCache.get(path);
+                    try {
+                        super.set(path);
+                    } finally {
+                        compiled = null;
+                    }
+                }
+                @Override protected void invalidated() {
+                    if (!settingGeometry) { geometry = null == compiled ? GeometryCache.get(get()) : compiled; }
+                    markDirty();
+                }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "path"; }
             };
@@ -103,7 +141,7 @@ public class SvgPath {
     public void setFill(final Paint fill) {
         if (null == this.fill) {
             _fill = fill;
-            dirty.set(true);
+            markDirty();
         } else {
             this.fill.set(fill);
         }
@@ -111,7 +149,7 @@ public class SvgPath {
     public ObjectProperty<Paint> fillProperty() {
         if (null == fill) {
             fill = new ObjectPropertyBase<>(_fill) {
-                @Override protected void invalidated() { dirty.set(true); }
+                @Override protected void invalidated() { markDirty(); }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "fill"; }
             };
@@ -124,7 +162,7 @@ public class SvgPath {
     public void setStroke(final Paint stroke) {
         if (null == this.stroke) {
             _stroke = stroke;
-            dirty.set(true);
+            markDirty();
         } else {
             this.stroke.set(stroke);
         }
@@ -132,7 +170,7 @@ public class SvgPath {
     public ObjectProperty<Paint> strokeProperty() {
         if (null == stroke) {
             stroke = new ObjectPropertyBase<>(_stroke) {
-                @Override protected void invalidated() { dirty.set(true); }
+                @Override protected void invalidated() { markDirty(); }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "stroke"; }
             };
@@ -145,7 +183,7 @@ public class SvgPath {
     public void setStrokeWidth(final double strokeWidth) {
         if (null == this.strokeWidth) {
             _strokeWidth = Helper.clamp(0, Double.MAX_VALUE, strokeWidth);
-            dirty.set(true);
+            markDirty();
         } else {
             this.strokeWidth.set(strokeWidth);
         }
@@ -155,7 +193,7 @@ public class SvgPath {
             strokeWidth = new DoublePropertyBase(_strokeWidth) {
                 @Override protected void invalidated() {
                     set(Helper.clamp(0, Double.MAX_VALUE, get()));
-                    dirty.set(true);
+                    markDirty();
                 }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "strokeWidth"; }
@@ -168,7 +206,7 @@ public class SvgPath {
     public void setFillRule(final FillRule fillRule) {
         if (null == this.fillRule) {
             _fillRule = fillRule;
-            dirty.set(true);
+            markDirty();
         } else {
             this.fillRule.set(fillRule);
         }
@@ -176,7 +214,7 @@ public class SvgPath {
     public ObjectProperty<FillRule> fillRuleProperty() {
         if (null == fillRule) {
             fillRule = new ObjectPropertyBase<>(_fillRule) {
-                @Override protected void invalidated() { dirty.set(true); }
+                @Override protected void invalidated() { markDirty(); }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "fillRule"; }
             };
@@ -189,7 +227,7 @@ public class SvgPath {
     public void setEffect(final Effect effect) {
         if (null == this.effect) {
             _effect = effect;
-            dirty.set(true);
+            markDirty();
         } else {
             this.effect.set(effect);
         }
@@ -197,7 +235,7 @@ public class SvgPath {
     public ObjectProperty<Effect> effectProperty() {
         if (null == effect) {
             effect = new ObjectPropertyBase<>(_effect) {
-                @Override protected void invalidated() { dirty.set(true); }
+                @Override protected void invalidated() { markDirty(); }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "effect"; }
             };
@@ -210,7 +248,7 @@ public class SvgPath {
     public void setVisible(final boolean visible) {
         if (null == this.visible) {
             _visible = visible;
-            dirty.set(true);
+            markDirty();
         } else {
             this.visible.set(visible);
         }
@@ -218,7 +256,7 @@ public class SvgPath {
     public BooleanProperty visibleProperty() {
         if (null == visible) {
             visible = new BooleanPropertyBase(_visible) {
-                @Override protected void invalidated() { dirty.set(true); }
+                @Override protected void invalidated() { markDirty(); }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "visible"; }
             };
@@ -226,15 +264,155 @@ public class SvgPath {
         return visible;
     }
 
-    public boolean isDirty() { return dirty.get(); }
-    protected void dirtyReset() { dirty.set(false); }
-    public ReadOnlyBooleanProperty dirtyProperty() { return dirty; }
+    /**
+     * The index of the layer in the SvgNode this path is drawn on. Each layer
+     * has its own canvas so that changes on one layer don't require to
+     * repaint the shapes on the other layers.
+     */
+    public int getLayer() { return null == layer ? _layer : layer.get(); }
+    public void setLayer(final int layer) {
+        if (null == this.layer) {
+            _layer = layer;
+            markDirty();
+        } else {
+            this.layer.set(layer);
+        }
+    }
+    public IntegerProperty layerProperty() {
+        if (null == layer) {
+            layer = new IntegerPropertyBase(_layer) {
+                @Override protected void invalidated() { markDirty(); }
+                @Override public Object getBean() { return SvgPath.this; }
+                @Override public String getName() { return "layer"; }
+            };
+        }
+        return layer;
+    }
+
+    /**
+     * A hint for the SvgNode that the rendered output of this path can be
+     * cached as an image and reused as long as the path is not changed.
+     * Changing the hint does not mark the path as dirty.
+     */
+    public boolean isCache() { return null == cache ? _cache : cache.get(); }
+    public void setCache(final boolean cache) {
+        if (null == this.cache) {
+            _cache = cache;
+        } else {
+            this.cache.set(cache);
+        }
+    }
+    public BooleanProperty cacheProperty() {
+        if (null == cache) {
+            cache = new BooleanPropertyBase(_cache) {
+                @Override public Object getBean() { return SvgPath.this; }
+                @Override public String getName() { return "cache"; }
+            };
+        }
+        return cache;
+    }
+
+    /**
+     * Defines whether the SvgNode may draw a simplified version of the
+     * geometry when the path is drawn at a small scale.
+     */
+    public boolean isLod() { return null == lod ? _lod : lod.get(); }
+    public void setLod(final boolean lod) {
+        if (null == this.lod) {
+            _lod = lod;
+            markDirty();
+        } else {
+            this.lod.set(lod);
+        }
+    }
+    public BooleanProperty lodProperty() {
+        if (null == lod) {
+            lod = new BooleanPropertyBase(_lod) {
+                @Override protected void invalidated() { markDirty(); }
+                @Override public Object getBean() { return SvgPath.this; }
+                @Override public String getName() { return "lod"; }
+            };
+        }
+        return lod;
+    }
+
+    public boolean isDirty() { return null == dirty ? _dirty : dirty.get(); }
+    protected void dirtyReset() {
+        if (null == dirty) {
+            _dirty = false;
+        } else {
+            dirty.set(false);
+        }
+    }
+    public ReadOnlyBooleanProperty dirtyProperty() {
+        if (null == dirty) {
+            dirty = new BooleanPropertyBase(_dirty) {
+                @Override public Object getBean() { return SvgPath.this; }
+                @Override public String getName() { return "dirty"; }
+            };
+        }
+        return dirty;
+    }
+    /**
+     * Marks the path as dirty and reports it to the trackers of all SvgNodes
+     * that show it.
+     */
+    private void markDirty() {
+        if (null == dirty) {
+            _dirty = true;
+        } else {
+            dirty.set(true);
+        }
+        if (null == trackers) { return; }
+        for (int i = 0 ; i < trackers.length ; i++) { trackers[i].markDirty(slots[i]); }
+    }
+
+    /**
+     * Returns the slot of this path in the given tracker or -1 if the path
+     * does not report to the tracker.
+     */
+    int getSlot(final DirtyTracker tracker) {
+        if (null == trackers) { return -1; }
+        for (int i = 0 ; i < trackers.length ; i++) {
+            if (trackers[i] == tracker) { return slots[i]; }
+        }
+        return -1;
+    }
+    void addTracker(final DirtyTracker tracker, final int slot) {
+        if (null == trackers) {
+            trackers = new DirtyTracker[] { tracker };
+            slots    = new int[] { slot };
+        } else {
+            // A path is rarely shown by more than a few nodes
+            trackers = Arrays.copyOf(trackers, trackers.length + 1);
+            slots    = Arrays.copyOf(slots, slots.length + 1);
+            trackers[trackers.length - 1] = tracker;
+            slots[slots.length - 1]       = slot;
+        }
+    }
+    void removeTracker(final DirtyTracker tracker) {
+        if (null == trackers) { return; }
+        for (int i = 0 ; i < trackers.length ; i++) {
+            if (trackers[i] != tracker) { continue; }
+            if (1 == trackers.length) {
+                trackers = null;
+                slots    = null;
+            } else {
+                final int last = trackers.length - 1;
+                trackers[i] = trackers[last];
+                slots[i]    = slots[last];
+                trackers    = Arrays.copyOf(trackers, last);
+                slots       = Arrays.copyOf(slots, last);
+            }
+            return;
+        }
+    }
 
     public StrokeLineJoin getLineJoin() { return null == lineJoin ? _lineJoin : lineJoin.get(); }
     public void setLineJoin(final StrokeLineJoin lineJoin) {
         if (null == this.lineJoin) {
             _lineJoin = lineJoin;
-            dirty.set(true);
+            markDirty();
         } else {
             this.lineJoin.set(lineJoin);
         }
@@ -242,7 +420,7 @@ public class SvgPath {
     public ObjectProperty<StrokeLineJoin> lineJoinProperty() {
         if (null == lineJoin) {
             lineJoin = new ObjectPropertyBase<StrokeLineJoin>(_lineJoin) {
-                @Override protected void invalidated() { dirty.set(true); }
+                @Override protected void invalidated() { markDirty(); }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "lineJoin"; }
             };
@@ -255,7 +433,7 @@ public class SvgPath {
     public void setLineCap(final StrokeLineCap lineCap) {
         if (null == this.lineCap) {
             _lineCap = lineCap;
-            dirty.set(true);
+            markDirty();
         } else {
             this.lineCap.set(lineCap);
         }
@@ -263,7 +441,7 @@ public class SvgPath {
     public ObjectProperty<StrokeLineCap> lineCapProperty() {
         if (null == lineCap) {
             lineCap = new ObjectPropertyBase<StrokeLineCap>(_lineCap) {
-                @Override protected void invalidated() { dirty.set(true); }
+                @Override protected void invalidated() { markDirty(); }
                 @Override public Object getBean() { return SvgPath.this; }
                 @Override public String getName() { return "lineCap"; }
             };
@@ -272,273 +450,123 @@ public class SvgPath {
         return lineCap;
     }
 
+    /**
+     * Returns the compiled geometry of the current path. The geometry is
+     * immutable and shared (via the GeometryCache) with all other paths
+     * that use the same path string.
+     */
+    public SvgGeometry getGeometry() { return geometry; }
+    /**
+     * Replaces the geometry of this path without parsing. The path string
+     * is set to the source of the geometry, which is null for geometries
+     * that were not compiled from a String (see SvgGeometry.toPathString()).
+     */
+    public void setGeometry(final SvgGeometry geometry) {
+        final SvgGeometry newGeometry = null == geometry ? SvgGeometry.EMPTY : geometry;
+        if (null == this.path) {
+            this.geometry = newGeometry;
+            _path         = newGeometry.getSource();
+        } else {
+            settingGeometry = true;
+            try {
+                this.path.set(newGeometry.getSource());
+            } finally {
+                settingGeometry = false;
+            }
+            this.geometry = newGeometry;
+        }
+        markDirty();
+    }
+
+    /**
+     * Returns the area that is covered when the path is drawn. The bounds
+     * of the geometry are padded by the stroke (including miter joins and
+     * square caps) and by the extent of the effect.
+     */
+    public Bounds getBounds() {
+        if (geometry.isEmpty()) { return new BoundingBox(0, 0, 0, 0); }
+        double padding = null == getStroke() ? 0 : getStrokePadding(getStrokeWidth(), getLineJoin(), getLineCap());
+        padding += Helper.getEffectPadding(getEffect());
+        if (Double.isInfinite(padding)) {
+            return new BoundingBox(-Double.MAX_VALUE * 0.5, -Double.MAX_VALUE * 0.5, Double.MAX_VALUE, Double.MAX_VALUE);
+        }
+        return new BoundingBox(geometry.getMinX() - padding, geometry.getMinY() - padding,
+                               geometry.getMaxX() - geometry.getMinX() + 2 * padding, geometry.getMaxY() - geometry.getMinY() + 2 * padding);
+    }
+
+    /**
+     * Returns the distance by which a stroke with the given style can extend
+     * the area that is covered by a geometry.
+     */
+    static double getStrokePadding(final double strokeWidth, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap) {
+        if (strokeWidth <= 0) { return 0; }
+        if (StrokeLineJoin.MITER == lineJoin) { return strokeWidth * 0.5 * MITER_LIMIT; }
+        if (StrokeLineCap.SQUARE == lineCap) { return strokeWidth * 0.5 * Math.sqrt(2); }
+        return strokeWidth * 0.5;
+    }
+
     public void draw(final GraphicsContext ctx) {
-        if (isVisible()) {
+        draw(ctx, geometry);
+    }
+    /**
+     * Draws the path with the level of detail for the given scale, unless
+     * level of detail has been switched off for this path.
+     * @param ctx       the context to draw to
+     * @param scale     the scale the context is shown with
+     * @param tolerance the maximum deviation from the geometry in pixels
+     */
+    public void draw(final GraphicsContext ctx, final double scale, final double tolerance) {
+        draw(ctx, getGeometry(scale, tolerance));
+    }
+    /**
+     * Returns the geometry that is drawn at the given scale, which is the
+     * level of detail for the scale unless level of detail is switched off.
+     */
+    SvgGeometry getGeometry(final double scale, final double tolerance) {
+        return isLod() ? geometry.getLevelOfDetail(scale, tolerance) : geometry;
+    }
 
+    private void draw(final GraphicsContext ctx, final SvgGeometry geometry) {
+        if (isVisible()) {
             ctx.save();
 
             ctx.setEffect(getEffect());
             ctx.setLineJoin(getLineJoin());
             ctx.setLineCap(getLineCap());
+            ctx.setLineWidth(getStrokeWidth());
+            ctx.setFillRule(getFillRule());
             ctx.setFill(getFill());
             ctx.setStroke(getStroke());
             ctx.beginPath();
-
-            SVGParser p = new SVGParser(getPath());
-            p.allowComma = false;
-            boolean largeArcFlag      = false, sweepFlag = false;
-            double  rx, ry, a;
-            double  x, y, lastX       = -Double.MAX_VALUE, lastY = -Double.MAX_VALUE;
-            double  c1x, c1y, lastC1X = -Double.MAX_VALUE, lastC1Y = -Double.MAX_VALUE;
-            double  c2x, c2y, lastC2X = -Double.MAX_VALUE, lastC2Y = -Double.MAX_VALUE;
-            long    elementCount      = 0;
-            while (!p.isDone()) {
-                p.allowComma = false;
-                char cmd = p.getChar();
-                switch (cmd) {
-                    case 'M':
-                        x = p.f();
-                        y = p.f();
-                        ctx.moveTo(x, y);
-                        lastX = x;
-                        lastY = y;
-                        while (p.nextIsNumber()) {
-                            x = p.f();
-                            y = p.f();
-                            ctx.lineTo(x, y);
-                            lastX = x;
-                            lastY = y;
-                        }
-                        elementCount++;
-                        break;
-                    case 'm':
-                        if (elementCount > 0) {
-                            x = p.f() - lastX;
-                            y = p.f() - lastY;
-                            ctx.moveTo(x, y); // move relative
-                            lastX = x;
-                            lastY = y;
-                        } else {
-                            x = p.f();
-                            y = p.f();
-                            ctx.moveTo(x, y);
-                            lastX = x;
-                            lastY = y;
-                        }
-                        while (p.nextIsNumber()) {
-                            x = p.f() - lastX;
-                            y = p.f() - lastY;
-                            ctx.lineTo(p.f(), p.f()); // move relative
-                            lastX = x;
-                            lastY = y;
-                        }
-                        elementCount++;
-                        break;
-                    case 'L':
-                        do {
-                            x = p.f();
-                            y = p.f();
-                            ctx.lineTo(x, y);
-                            lastX = x;
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'l':
-                        do {
-                            x = p.f() - lastX;
-                            y = p.f() - lastY;
-                            ctx.lineTo(x, y); // move relative
-                            lastX = x;
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'H':
-                        do {
-                            x = p.f();
-                            ctx.lineTo(x, lastY);
-                            lastX = x;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'h':
-                        do {
-                            x = p.f();
-                            ctx.lineTo(x, lastY); // move relative
-                            lastX = x;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'V':
-                        do {
-                            y = p.f();
-                            ctx.lineTo(lastX, y);
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'v':
-                        do {
-                            y = p.f();
-                            ctx.lineTo(lastX, y); // move relative
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'Q':
-                        do {
-                            c1x = p.f();
-                            c1y = p.f();
-                            x = p.f();
-                            y = p.f();
-                            ctx.quadraticCurveTo(c1x, c1y, x, y);
-                            lastC1X = c1x;
-                            lastC1Y = c1y;
-                            lastX = x;
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'q':
-                        do {
-                            c1x = p.f() - lastC1X;
-                            c1y = p.f() - lastC1Y;
-                            x = p.f() - lastX;
-                            y = p.f() - lastY;
-                            ctx.quadraticCurveTo(c1x, c1y, x, y); // relative move
-                            lastC1X = c1x;
-                            lastC1Y = c1y;
-                            lastX = x;
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                /*
-                case 'T':
-                    do {
-                        ctx.quadraticCurveToSmooth(p.f(), p.f());
-                    } while (p.nextIsNumber());
-                    break;
-                case 't':
-                    do {
-                        ctx.quadraticCurveToSmoothRel(p.f(), p.f());
-                    } while (p.nextIsNumber());
-                    break;
-                    */
-                    case 'C':
-                        do {
-                            c1x = p.f();
-                            c1y = p.f();
-                            c2x = p.f();
-                            c2y = p.f();
-                            x = p.f();
-                            y = p.f();
-                            ctx.bezierCurveTo(c1x, c1y, c2x, c2y, x, y);
-                            lastC1X = c1x;
-                            lastC1Y = c1y;
-                            lastC2X = c2x;
-                            lastC2Y = c2y;
-                            lastX = x;
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'c':
-                        do {
-                            c1x = p.f() - lastC1X;
-                            c1y = p.f() - lastC1Y;
-                            c2x = p.f() - lastC2X;
-                            c2y = p.f() - lastC2Y;
-                            x = p.f() - lastX;
-                            y = p.f() - lastY;
-                            ctx.bezierCurveTo(c1x, c1y, c2x, c2y, x, y); // move relative
-                            lastC1X = c1x;
-                            lastC1Y = c1y;
-                            lastC2X = c2x;
-                            lastC2Y = c2y;
-                            lastX = x;
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                /*
-                case 'S':
-                    do {
-                        ctx.bezierCurveToSmooth(p.f(), p.f(), p.f(), p.f());
-                    } while (p.nextIsNumber());
-                    elementCount++;
-                    break;
-                case 's':
-                    do {
-                        ctx.bezierCurveToSmoothRel(p.f(), p.f(), p.f(), p.f());
-                    } while (p.nextIsNumber());
-                    elementCount++;
-                    break;
-                    */
-                    case 'A':
-                        do {
-                            rx = p.f();
-                            ry = p.f();
-                            a = p.a();
-                            largeArcFlag = p.b();
-                            sweepFlag = p.b();
-                            x = p.f();
-                            y = p.f();
-                            //ctx.arcTo(rx, ry, a, largeArcFlag, sweepFlag, x, y);
-                            ctx.arc(x, y, rx, ry, 0, a);
-                            lastX = x;
-                            lastY = y;
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'a':
-                        do {
-                            rx = p.f();
-                            ry = p.f();
-                            a = p.a();
-                            largeArcFlag = p.b();
-                            sweepFlag = p.b();
-                            x = p.f() - lastX;
-                            y = p.f() - lastY;
-                            ctx.arc(x, y, rx, ry, 0, a); // move relative
-                            lastX = x;
-                            lastY = y;
-
-                        } while (p.nextIsNumber());
-                        elementCount++;
-                        break;
-                    case 'Z':
-                    case 'z':
-                        ctx.closePath();
-                        elementCount++;
-                        break;
-                    default:
-                        throw new IllegalArgumentException("invalid command (" + cmd + ") in SVG polygon at pos=" + p.pos);
-                }
-                p.allowComma = false;
-            }
-
-            ctx.fill();
-            ctx.stroke();
+            geometry.appendTo(ctx);
+            // The context ignores null paints and widths <= 0 and would use the previous values
+            if (null != getFill()) { ctx.fill(); }
+            if (null != getStroke() && getStrokeWidth() > 0) { ctx.stroke(); }
 
             ctx.restore();
         }
     }
 
     static class SVGParser {
-        final String svgpath;
-        final int    length;
-        int          pos;
-        boolean      allowComma;
-        double       lastX;
-        double       lastY;
+        private static final double[]     POW10      = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                                                           1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+        private static final int          MAX_DIGITS = 18;
+        final                CharSequence svgpath;
+        final                int          length;
+                             int          pos;
+                             boolean      allowComma;
 
 
-        public SVGParser(final String SVG_PATH) {
+        public SVGParser(final CharSequence SVG_PATH) {
             svgpath = SVG_PATH;
             length  = SVG_PATH.length();
         }
+        public SVGParser(final char[] SVG_PATH) {
+            this(CharBuffer.wrap(SVG_PATH));
+        }
+        public SVGParser(final ByteBuffer SVG_PATH) {
+            this(new AsciiSequence(SVG_PATH, SVG_PATH.position(), SVG_PATH.remaining()));
+        }
 
 
         public boolean isDone() { return (toNextNonWsp() >= length); }
@@ -562,19 +590,89 @@ public class SvgPath {
 
         public double a() { return Math.toRadians(getDouble()); }
 
+        /**
+         * Scans the next number directly from the characters of the path.
+         * Up to 18 significant digits are accumulated in a long and, if the
+         * mantissa and the power of ten are both exactly representable, the
+         * result is computed with a single (correctly rounded) multiplication
+         * or division. All other numbers fall back to Double.parseDouble().
+         */
         public double getDouble() {
-            int start  = toNextNonWsp();
-            int end    = toNumberEnd();
+            final int start = toNextNonWsp();
             allowComma = true;
-
-            if (start < end) {
-                String flstr = svgpath.substring(start, end);
-                try {
-                    return Double.parseDouble(flstr);
-                } catch (NumberFormatException e) { }
-                throw new IllegalArgumentException("invalid double (" + flstr + ") in polygon at pos=" + start);
+            if (start >= length) { throw new IllegalArgumentException("end of polygon looking for double"); }
+
+            int     i         = start;
+            char    c         = svgpath.charAt(i);
+            boolean negative  = c == '-';
+            if (negative || c == '+') { i++; }
+
+            long    mantissa  = 0;
+            int     digits    = 0;
+            int     exponent  = 0;
+            boolean hasDigits = false;
+            boolean truncated = false;
+            while (i < length && (c = svgpath.charAt(i)) >= '0' && c <= '9') {
+                hasDigits = true;
+                if (digits < MAX_DIGITS) {
+                    if (mantissa != 0 || c != '0') {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits++;
+                    }
+                } else {
+                    exponent++;
+                    truncated |= c != '0';
+                }
+                i++;
+            }
+            if (i < length && svgpath.charAt(i) == '.') {
+                i++;
+                while (i < length && (c = svgpath.charAt(i)) >= '0' && c <= '9') {
+                    hasDigits = true;
+                    if (digits < MAX_DIGITS) {
+                        if (mantissa != 0 || c != '0') {
+                            mantissa = mantissa * 10 + (c - '0');
+                            digits++;
+                        }
+                        exponent--;
+                    } else {
+                        truncated |= c != '0';
+                    }
+                    i++;
+                }
+            }
+            if (!hasDigits) { throw new IllegalArgumentException("invalid double (" + svgpath.subSequence(start, Math.min(length, i + 1)) + ") in polygon at pos=" + start); }
+
+            if (i < length && ((c = svgpath.charAt(i)) == 'e' || c == 'E')) {
+                int     j           = i + 1;
+                boolean negativeExp = false;
+                if (j < length && ((c = svgpath.charAt(j)) == '-' || c == '+')) {
+                    negativeExp = c == '-';
+                    j++;
+                }
+                int     exp       = 0;
+                boolean hasExpDigits = false;
+                while (j < length && (c = svgpath.charAt(j)) >= '0' && c <= '9') {
+                    if (exp < 100_000) { exp = exp * 10 + (c - '0'); }
+                    hasExpDigits = true;
+                    j++;
+                }
+                if (!hasExpDigits) { throw new IllegalArgumentException("invalid double (" + svgpath.subSequence(start, j) + ") in polygon at pos=" + start); }
+                exponent += negativeExp ? -exp : exp;
+                i = j;
+            }
+            pos = i;
+
+            final double value;
+            if (mantissa == 0) {
+                value = 0;
+            } else if (!truncated && mantissa <= (1L << 53) && exponent >= -22 && exponent <= 22) {
+                value = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+            } else {
+                // Slow path for very long mantissas and large exponents
+                return Double.parseDouble(svgpath.subSequence(start, i).toString());
             }
-            throw new IllegalArgumentException("end of polygon looking for double");
+            return negative ? -value : value;
         }
 
         public boolean b() {
@@ -612,36 +710,36 @@ public class SvgPath {
             return pos;
         }
 
-        private int toNumberEnd() {
-            boolean allowSign  = true;
-            boolean hasExp     = false;
-            boolean hasDecimal = false;
-            while (pos < length) {
-                switch (svgpath.charAt(pos)) {
-                    case '-':
-                    case '+':
-                        if (!allowSign) return pos;
-                        allowSign = false;
-                        break;
-                    case '0': case '1': case '2': case '3': case '4':
-                    case '5': case '6': case '7': case '8': case '9':
-                        allowSign = false;
-                        break;
-                    case 'E': case 'e':
-                        if (hasExp) return pos;
-                        hasExp = allowSign = true;
-                        break;
-                    case '.':
-                        if (hasExp || hasDecimal) return pos;
-                        hasDecimal = true;
-                        allowSign  = false;
-                        break;
-                    default:
-                        return pos;
-                }
-                pos++;
+
+        // ******************** Inner Classes *********************************
+        /**
+         * Read-only view on the ASCII encoded bytes of a ByteBuffer that avoids
+         * decoding the whole buffer into a String.
+         */
+        private static class AsciiSequence implements CharSequence {
+            private final ByteBuffer buffer;
+            private final int        offset;
+            private final int        length;
+
+
+            AsciiSequence(final ByteBuffer buffer, final int offset, final int length) {
+                this.buffer = buffer;
+                this.offset = offset;
+                this.length = length;
+            }
+
+
+            @Override public int length() { return length; }
+
+            @Override public char charAt(final int index) { return (char) (buffer.get(offset + index) & 0xFF); }
+
+            @Override public CharSequence subSequence(final int start, final int end) { return new AsciiSequence(buffer, offset + start, end - start); }
+
+            @Override public String toString() {
+                final char[] chars = new char[length];
+                for (int i = 0 ; i < length ; i++) { chars[i] = charAt(i); }
+                return new String(chars);
             }
-            return pos;
         }
     }
 }
@@ -18,10 +18,12 @@ package eu.hansolo.fx.svgnode;
 
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
@@ -31,7 +33,12 @@ import javafx.scene.shape.FillRule;
 import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.shape.StrokeLineJoin;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 
 public class SvgPathBuilder<B extends SvgPathBuilder<B>> {
@@ -92,6 +99,11 @@ public class SvgPathBuilder<B extends SvgPathBuilder<B>> {
         return (B)this;
     }
 
+    public final B layer(final int layer) {
+        properties.put("layer", new SimpleIntegerProperty(layer));
+        return (B)this;
+    }
+
     public final SvgPath build() {
         final SvgPath svgPath = new SvgPath();
         for (String key : properties.keySet()) {
@@ -101,7 +113,7 @@ public class SvgPathBuilder<B extends SvgPathBuilder<B>> {
                 svgPath.setFill(((ObjectProperty<Paint>) properties.get(key)).get());
             } else if ("stroke".equals(key)) {
                 svgPath.setStroke(((ObjectProperty<Paint>) properties.get(key)).get());
-            } else if ("lineWidth".equals(key)) {
+            } else if ("strokeWidth".equals(key)) {
                 svgPath.setStrokeWidth(((DoubleProperty) properties.get(key)).get());
             } else if ("fillRule".equals(key)) {
                 svgPath.setFillRule(((ObjectProperty<FillRule>) properties.get(key)).get());
@@ -113,8 +125,33 @@ public class SvgPathBuilder<B extends SvgPathBuilder<B>> {
                 svgPath.setLineJoin(((ObjectProperty<StrokeLineJoin>) properties.get(key)).get());
             } else if("lineCap".equals(key)) {
                 svgPath.setLineCap(((ObjectProperty<StrokeLineCap>) properties.get(key)).get());
+            } else if("layer".equals(key)) {
+                svgPath.setLayer(((IntegerProperty) properties.get(key)).get());
             }
         }
         return svgPath;
     }
+
+    /**
+     * Builds the SvgPath on a thread of the default executor (virtual threads
+     * if available). The path is parsed and validated on that thread, an
+     * invalid path completes the returned future exceptionally.
+     */
+    public final CompletableFuture<SvgPath> buildAsync() { return buildAsync(Helper.getDefaultExecutor()); }
+    public final CompletableFuture<SvgPath> buildAsync(final Executor executor) {
+        return CompletableFuture.supplyAsync(this::build, executor);
+    }
+
+    /**
+     * Builds all given builders in parallel on the default executor.
+     * @return one future per builder in the order of the given builders
+     */
+    public static final List<CompletableFuture<SvgPath>> buildAll(final Collection<? extends SvgPathBuilder<?>> builders) {
+        return buildAll(builders, Helper.getDefaultExecutor());
+    }
+    public static final List<CompletableFuture<SvgPath>> buildAll(final Collection<? extends SvgPathBuilder<?>> builders, final Executor executor) {
+        final List<CompletableFuture<SvgPath>> futures = new ArrayList<>(builders.size());
+        for (SvgPathBuilder<?> builder : builders) { futures.add(builder.buildAsync(executor)); }
+        return futures;
+    }
 }
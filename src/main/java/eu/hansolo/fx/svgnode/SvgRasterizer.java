@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Anti aliased scanline rasterizer that draws SvgPaths into an int[] of
+ * non premultiplied ARGB pixels without the JavaFX toolkit. Coverage is
+ * computed with 16 x 16 samples per pixel. Supported are both fill rules,
+ * Color, LinearGradient and RadialGradient paints and strokes with all
+ * line joins and caps. Effects are ignored.
+ * A rasterizer is not thread safe, use one instance per thread.
+ */
+public final class SvgRasterizer {
+    public  static final double   DEFAULT_TOLERANCE = 0.1;
+    private static final int      SUBPIXEL_SHIFT    = 4;
+    private static final int      SUBPIXELS         = 1 << SUBPIXEL_SHIFT;
+    private static final int      SUBPIXEL_MASK     = SUBPIXELS - 1;
+    private static final int      MAX_COVERAGE      = SUBPIXELS * SUBPIXELS;
+    private static final int      GRADIENT_SIZE     = 1024;
+    private        final int      width;
+    private        final int      height;
+    private        final int[]    pixels;
+    private        final int[]    coverage;
+    private        final Edges    edges;
+    private              double   scaleX;
+    private              double   scaleY;
+    private              double   translateX;
+    private              double   translateY;
+    private              double   tolerance;
+    private              double[] crossingX;
+    private              int[]    crossingDir;
+
+
+    // ******************** Constructors **************************************
+    public SvgRasterizer(final int width, final int height) {
+        this(new int[width * height], width, height);
+    }
+    public SvgRasterizer(final int[] pixels, final int width, final int height) {
+        if (width <= 0 || height <= 0) { throw new IllegalArgumentException("Size must be positive"); }
+        if (pixels.length < width * height) { throw new IllegalArgumentException("Pixel array too small"); }
+        this.width       = width;
+        this.height      = height;
+        this.pixels      = pixels;
+        this.coverage    = new int[width + 2];
+        this.edges       = new Edges();
+        this.scaleX      = 1;
+        this.scaleY      = 1;
+        this.tolerance   = DEFAULT_TOLERANCE;
+        this.crossingX   = new double[16];
+        this.crossingDir = new int[16];
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the pixels as non premultiplied ARGB values in rows from top
+     * to bottom. The array is not copied.
+     */
+    public int[] getPixels() { return pixels; }
+
+    public void clear() { clear(0x00000000); }
+    public void clear(final int argb) { Arrays.fill(pixels, 0, width * height, argb); }
+
+    /**
+     * Sets the transformation from path coordinates to pixels, e.g. the
+     * scale of an SvgNode.
+     */
+    public void setTransform(final double scaleX, final double scaleY, final double translateX, final double translateY) {
+        this.scaleX     = scaleX;
+        this.scaleY     = scaleY;
+        this.translateX = translateX;
+        this.translateY = translateY;
+    }
+
+    public double getTolerance() { return tolerance; }
+    /**
+     * Defines the maximum distance in pixels between a curve and the line
+     * segments it is approximated with.
+     */
+    public void setTolerance(final double tolerance) {
+        if (tolerance <= 0) { throw new IllegalArgumentException("Tolerance must be positive"); }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Draws the given shapes in the same order as an SvgNode does, which
+     * is ordered by layer and by their index within a layer.
+     */
+    public void draw(final List<SvgPath> shapes) {
+        final SvgPath[] sorted = shapes.toArray(new SvgPath[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(SvgPath::getLayer));
+        for (SvgPath svgPath : sorted) { draw(svgPath); }
+    }
+    /**
+     * Fills and strokes the given shape like SvgPath.draw() does.
+     */
+    public void draw(final SvgPath svgPath) {
+        if (!svgPath.isVisible()) { return; }
+        final SvgGeometry geometry = svgPath.getGeometry();
+        fill(geometry, svgPath.getFillRule(), svgPath.getFill());
+        stroke(geometry, svgPath.getStrokeWidth(), svgPath.getLineJoin(), svgPath.getLineCap(), svgPath.getStroke());
+    }
+
+    public void fill(final SvgGeometry geometry, final FillRule fillRule, final Paint paint) {
+        if (null == paint || geometry.isEmpty() || isTransparent(paint)) { return; }
+        edges.clear(1, 1, 0, 0);
+        PathFlattener.flatten(geometry, scaleX, scaleY, translateX, translateY, tolerance, edges);
+        edges.closePath();
+        rasterize(FillRule.EVEN_ODD == fillRule, createPaintContext(paint, geometry));
+    }
+
+    public void stroke(final SvgGeometry geometry, final double strokeWidth, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap, final Paint paint) {
+        if (null == paint || geometry.isEmpty() || !(strokeWidth > 0) || isTransparent(paint)) { return; }
+        final double scale = Math.max(Math.abs(scaleX), Math.abs(scaleY));
+        if (0 == scale) { return; }
+        // The stroke is built in path coordinates and transformed by the edges
+        edges.clear(scaleX, scaleY, translateX, translateY);
+        final PathStroker stroker = new PathStroker(strokeWidth * 0.5, lineJoin, lineCap, tolerance / scale, edges);
+        PathFlattener.flatten(geometry, tolerance / scale, stroker);
+        stroker.finish(false);
+        rasterize(false, createPaintContext(paint, geometry));
+    }
+
+    private static boolean isTransparent(final Paint paint) {
+        return paint instanceof Color && ((Color) paint).getOpacity() == 0;
+    }
+
+    private void rasterize(final boolean evenOdd, final PaintContext paint) {
+        final int edgeCount = edges.count;
+        if (0 == edgeCount) { return; }
+
+        // Sort the edges by their first subpixel row
+        final long[] order = new long[edgeCount];
+        for (int e = 0 ; e < edgeCount ; e++) { order[e] = ((long) edges.firstRow[e] << 32) | e; }
+        Arrays.sort(order);
+
+        final int   lastRow = height * SUBPIXELS;
+        final int[] active  = new int[edgeCount];
+        int         activeCount = 0;
+        int         next        = 0;
+        int         row         = Math.max(0, edges.firstRow[(int) order[0]]);
+        int         minPixel    = Integer.MAX_VALUE;
+        int         maxPixel    = -1;
+        while (row < lastRow && (next < edgeCount || activeCount > 0)) {
+            // Skip empty rows
+            if (0 == activeCount && (int) (order[next] >>> 32) > row) {
+                final int skipTo = Math.min(lastRow, (int) (order[next] >>> 32));
+                if ((skipTo >> SUBPIXEL_SHIFT) != (row >> SUBPIXEL_SHIFT) && maxPixel >= 0) {
+                    blendRow(row >> SUBPIXEL_SHIFT, minPixel, maxPixel, paint);
+                    minPixel = Integer.MAX_VALUE;
+                    maxPixel = -1;
+                }
+                row = skipTo;
+                continue;
+            }
+            while (next < edgeCount && (int) (order[next] >>> 32) <= row) { active[activeCount++] = (int) order[next++]; }
+
+            // Intersect the active edges with the center of the subpixel row
+            final double y     = (row + 0.5) / SUBPIXELS;
+            int          count = 0;
+            for (int a = 0 ; a < activeCount ; a++) {
+                final int e = active[a];
+                if (edges.lastRow[e] <= row) {
+                    active[a--] = active[--activeCount];
+                    continue;
+                }
+                if (count == crossingX.length) {
+                    crossingX   = Arrays.copyOf(crossingX, count * 2);
+                    crossingDir = Arrays.copyOf(crossingDir, count * 2);
+                }
+                final double x  = edges.x[e] + (y - edges.y[e]) * edges.slope[e];
+                final int    d  = edges.dir[e];
+                int          c  = count++;
+                while (c > 0 && crossingX[c - 1] > x) {
+                    crossingX[c]   = crossingX[c - 1];
+                    crossingDir[c] = crossingDir[c - 1];
+                    c--;
+                }
+                crossingX[c]   = x;
+                crossingDir[c] = d;
+            }
+
+            // Accumulate the spans that are inside of the path
+            int winding = 0;
+            for (int c = 0 ; c < count - 1 ; c++) {
+                winding += crossingDir[c];
+                if (evenOdd ? (winding & 1) == 0 : 0 == winding) { continue; }
+                final int x0 = toSubpixel(crossingX[c]);
+                final int x1 = toSubpixel(crossingX[c + 1]);
+                if (x0 >= x1) { continue; }
+                addSpan(x0, x1);
+                minPixel = Math.min(minPixel, x0 >> SUBPIXEL_SHIFT);
+                maxPixel = Math.max(maxPixel, x1 >> SUBPIXEL_SHIFT);
+            }
+
+            row++;
+            if ((row & SUBPIXEL_MASK) == 0 && maxPixel >= 0) {
+                blendRow((row - 1) >> SUBPIXEL_SHIFT, minPixel, maxPixel, paint);
+                minPixel = Integer.MAX_VALUE;
+                maxPixel = -1;
+            }
+        }
+        if (maxPixel >= 0) { blendRow(Math.min(height - 1, row >> SUBPIXEL_SHIFT), minPixel, maxPixel, paint); }
+    }
+
+    private int toSubpixel(final double x) {
+        return (int) Math.round(Helper.clamp(0, width, x) * SUBPIXELS);
+    }
+
+    private void addSpan(final int x0, final int x1) {
+        final int p0 = x0 >> SUBPIXEL_SHIFT;
+        final int p1 = x1 >> SUBPIXEL_SHIFT;
+        if (p0 == p1) {
+            coverage[p0]     += x1 - x0;
+            coverage[p0 + 1] -= x1 - x0;
+        } else {
+            final int first = SUBPIXELS - (x0 & SUBPIXEL_MASK);
+            final int last  = x1 & SUBPIXEL_MASK;
+            coverage[p0]     += first;
+            coverage[p0 + 1] += SUBPIXELS - first;
+            coverage[p1]     += last - SUBPIXELS;
+            coverage[p1 + 1] -= last;
+        }
+    }
+
+    private void blendRow(final int y, final int minPixel, final int maxPixel, final PaintContext paint) {
+        final int offset = y * width;
+        final int end    = Math.min(width - 1, maxPixel);
+        int       sum    = 0;
+        for (int x = minPixel ; x <= end ; x++) {
+            sum += coverage[x];
+            coverage[x] = 0;
+            if (sum > 0) {
+                final int argb  = paint.getArgb(x, y);
+                final int alpha = ((argb >>> 24) * Math.min(sum, MAX_COVERAGE)) >> (2 * SUBPIXEL_SHIFT);
+                pixels[offset + x] = blend(pixels[offset + x], argb, alpha);
+            }
+        }
+        for (int x = end + 1 ; x <= maxPixel + 1 ; x++) { coverage[x] = 0; }
+    }
+
+    /**
+     * Blends the given non premultiplied color with the given alpha over
+     * the given non premultiplied destination pixel.
+     */
+    private static int blend(final int dst, final int src, final int alpha) {
+        if (0 == alpha) { return dst; }
+        final int dstAlpha = dst >>> 24;
+        if (255 == alpha || 0 == dstAlpha) { return (alpha << 24) | (src & 0x00FFFFFF); }
+
+        final int dstWeight = dstAlpha * (255 - alpha) / 255;
+        final int outAlpha  = alpha + dstWeight;
+        final int r = (((src >> 16) & 0xFF) * alpha + ((dst >> 16) & 0xFF) * dstWeight) / outAlpha;
+        final int g = (((src >>  8) & 0xFF) * alpha + ((dst >>  8) & 0xFF) * dstWeight) / outAlpha;
+        final int b = ((src         & 0xFF) * alpha + (dst         & 0xFF) * dstWeight) / outAlpha;
+        return (outAlpha << 24) | (r << 16) | (g << 8) | b;
+    }
+
+
+    // ******************** Paints ********************************************
+    private PaintContext createPaintContext(final Paint paint, final SvgGeometry geometry) {
+        if (paint instanceof Color) {
+            final int argb = Helper.toArgb((Color) paint);
+            return (x, y) -> argb;
+        } else if (paint instanceof LinearGradient) {
+            return new LinearGradientContext((LinearGradient) paint, geometry);
+        } else if (paint instanceof RadialGradient) {
+            return new RadialGradientContext((RadialGradient) paint, geometry);
+        }
+        throw new IllegalArgumentException("Unsupported paint " + paint);
+    }
+
+    private interface PaintContext {
+        int getArgb(int x, int y);
+    }
+
+    private abstract class GradientContext implements PaintContext {
+        private final int[]       colors;
+        private final CycleMethod cycleMethod;
+        private final boolean     proportional;
+        private final double      minX;
+        private final double      minY;
+        private final double      boundsWidth;
+        private final double      boundsHeight;
+
+
+        GradientContext(final List<Stop> stops, final CycleMethod cycleMethod, final boolean proportional, final SvgGeometry geometry) {
+            this.colors       = new int[GRADIENT_SIZE];
+            this.cycleMethod  = cycleMethod;
+            this.proportional = proportional;
+            this.minX         = geometry.getMinX();
+            this.minY         = geometry.getMinY();
+            this.boundsWidth  = geometry.getMaxX() - minX;
+            this.boundsHeight = geometry.getMaxY() - minY;
+            int stop = 0;
+            for (int i = 0 ; i < GRADIENT_SIZE ; i++) {
+                final double t = (double) i / (GRADIENT_SIZE - 1);
+                while (stop < stops.size() - 2 && stops.get(stop + 1).getOffset() < t) { stop++; }
+                final Stop   s0    = stops.get(stop);
+                final Stop   s1    = stops.get(Math.min(stop + 1, stops.size() - 1));
+                final double range = s1.getOffset() - s0.getOffset();
+                final double f     = range > 0 ? Helper.clamp(0, 1, (t - s0.getOffset()) / range) : 0;
+                colors[i] = Helper.toArgb(s0.getColor().interpolate(s1.getColor(), f));
+            }
+        }
+
+
+        @Override public int getArgb(final int x, final int y) {
+            // Pixel center in path coordinates, relative to the bounds for proportional gradients
+            double px = (x + 0.5 - translateX) / scaleX;
+            double py = (y + 0.5 - translateY) / scaleY;
+            if (proportional) {
+                px = boundsWidth  > 0 ? (px - minX) / boundsWidth  : 0;
+                py = boundsHeight > 0 ? (py - minY) / boundsHeight : 0;
+            }
+            double t = getFraction(px, py);
+            switch (cycleMethod) {
+                case REPEAT : t = t - Math.floor(t); break;
+                case REFLECT: t = t - 2 * Math.floor(t * 0.5); t = t > 1 ? 2 - t : t; break;
+                default     : t = Helper.clamp(0, 1, t); break;
+            }
+            return colors[(int) (t * (GRADIENT_SIZE - 1) + 0.5)];
+        }
+
+        abstract double getFraction(double x, double y);
+    }
+
+    private class LinearGradientContext extends GradientContext {
+        private final double startX;
+        private final double startY;
+        private final double dx;
+        private final double dy;
+        private final double lengthSquared;
+
+
+        LinearGradientContext(final LinearGradient gradient, final SvgGeometry geometry) {
+            super(gradient.getStops(), gradient.getCycleMethod(), gradient.isProportional(), geometry);
+            startX        = gradient.getStartX();
+            startY        = gradient.getStartY();
+            dx            = gradient.getEndX() - startX;
+            dy            = gradient.getEndY() - startY;
+            lengthSquared = dx * dx + dy * dy;
+        }
+
+
+        @Override double getFraction(final double x, final double y) {
+            return lengthSquared > 0 ? ((x - startX) * dx + (y - startY) * dy) / lengthSquared : 0;
+        }
+    }
+
+    private class RadialGradientContext extends GradientContext {
+        private final double centerX;
+        private final double centerY;
+        private final double radius;
+        private final double focusX;
+        private final double focusY;
+
+
+        RadialGradientContext(final RadialGradient gradient, final SvgGeometry geometry) {
+            super(gradient.getStops(), gradient.getCycleMethod(), gradient.isProportional(), geometry);
+            centerX = gradient.getCenterX();
+            centerY = gradient.getCenterY();
+            radius  = gradient.getRadius();
+            // Keep the focus inside of the circle
+            final double focusDistance = Helper.clamp(-0.99, 0.99, gradient.getFocusDistance()) * radius;
+            final double focusAngle    = Math.toRadians(gradient.getFocusAngle());
+            focusX = centerX + focusDistance * Math.cos(focusAngle);
+            focusY = centerY + focusDistance * Math.sin(focusAngle);
+        }
+
+
+        /**
+         * Returns the ratio between the distance of the point from the focus
+         * and the distance of the circle from the focus in the same direction.
+         */
+        @Override double getFraction(final double x, final double y) {
+            if (!(radius > 0)) { return 1; }
+            final double dx = x - focusX;
+            final double dy = y - focusY;
+            final double dd = dx * dx + dy * dy;
+            if (0 == dd) { return 0; }
+            final double gx = focusX - centerX;
+            final double gy = focusY - centerY;
+            final double gd = gx * dx + gy * dy;
+            final double s  = (-gd + Math.sqrt(Math.max(0, gd * gd - dd * (gx * gx + gy * gy - radius * radius)))) / dd;
+            return s > 0 ? 1 / s : 1;
+        }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /**
+     * The non horizontal edges of the closed polygons of a path in pixel
+     * coordinates. The points that are added are transformed by the given
+     * scale and translation.
+     */
+    private static class Edges implements PathFlattener.Sink {
+        double   scaleX;
+        double   scaleY;
+        double   translateX;
+        double   translateY;
+        double[] x;
+        double[] y;
+        double[] slope;
+        int[]    dir;
+        int[]    firstRow;
+        int[]    lastRow;
+        int      count;
+        double   startX;
+        double   startY;
+        double   lastX;
+        double   lastY;
+
+
+        Edges() {
+            x        = new double[64];
+            y        = new double[64];
+            slope    = new double[64];
+            dir      = new int[64];
+            firstRow = new int[64];
+            lastRow  = new int[64];
+        }
+
+
+        void clear(final double scaleX, final double scaleY, final double translateX, final double translateY) {
+            this.scaleX     = scaleX;
+            this.scaleY     = scaleY;
+            this.translateX = translateX;
+            this.translateY = translateY;
+            count  = 0;
+            startX = startY = lastX = lastY = 0;
+        }
+
+        @Override public void moveTo(final double x, final double y) {
+            closePath();
+            startX = lastX = x * scaleX + translateX;
+            startY = lastY = y * scaleY + translateY;
+        }
+
+        @Override public void lineTo(final double x, final double y) {
+            final double tx = x * scaleX + translateX;
+            final double ty = y * scaleY + translateY;
+            addEdge(lastX, lastY, tx, ty);
+            lastX = tx;
+            lastY = ty;
+        }
+
+        @Override public void closePath() {
+            addEdge(lastX, lastY, startX, startY);
+            lastX = startX;
+            lastY = startY;
+        }
+
+        private void addEdge(final double x0, final double y0, final double x1, final double y1) {
+            if (y0 == y1 || Double.isNaN(x0 + y0 + x1 + y1)) { return; }
+            final boolean down  = y1 > y0;
+            final double  top   = down ? y0 : y1;
+            final double  bot   = down ? y1 : y0;
+            // An edge covers the subpixel rows whose centers are in [top, bottom)
+            final int     first = (int) Math.ceil(top * SUBPIXELS - 0.5);
+            final int     last  = (int) Math.ceil(bot * SUBPIXELS - 0.5);
+            if (first >= last || last <= 0) { return; }
+            if (count == x.length) {
+                final int size = count * 2;
+                x        = Arrays.copyOf(x, size);
+                y        = Arrays.copyOf(y, size);
+                slope    = Arrays.copyOf(slope, size);
+                dir      = Arrays.copyOf(dir, size);
+                firstRow = Arrays.copyOf(firstRow, size);
+                lastRow  = Arrays.copyOf(lastRow, size);
+            }
+            x[count]        = down ? x0 : x1;
+            y[count]        = top;
+            slope[count]    = (x1 - x0) / (y1 - y0);
+            dir[count]      = down ? 1 : -1;
+            firstRow[count] = Math.max(0, first);
+            lastRow[count]  = last;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+
+/**
+ * Immutable lightweight alternative to SvgPath for very large numbers of
+ * shapes. A shape only keeps a reference to its (shared) geometry and its
+ * style packed into a few primitives: the fill and stroke as 32 bit ARGB
+ * values and the fill rule, line join and line cap in one byte. It has no
+ * properties and SvgNode does not register listeners on it, so a shape is
+ * changed by replacing it in SvgNode.getLightShapes() with one of the
+ * with...() copies.
+ * Effects are not supported and shapes are always drawn with the level of
+ * detail of the current scale.
+ */
+public final class SvgShape {
+    public  static final int              NONE       = 0;
+    private static final FillRule[]       FILL_RULES = FillRule.values();
+    private static final StrokeLineJoin[] LINE_JOINS = StrokeLineJoin.values();
+    private static final StrokeLineCap[]  LINE_CAPS  = StrokeLineCap.values();
+    private static final CachedColor[]    COLORS     = new CachedColor[256];
+    private        final SvgGeometry      geometry;
+    private        final int              fill;
+    private        final int              stroke;
+    private        final float            strokeWidth;
+    private        final byte             style;
+    private        final int              layer;
+
+
+    // ******************** Constructors **************************************
+    public SvgShape(final SvgGeometry geometry, final int fill, final int stroke, final double strokeWidth) {
+        this(geometry, fill, stroke, strokeWidth, FillRule.NON_ZERO, StrokeLineJoin.MITER, StrokeLineCap.SQUARE, 0);
+    }
+    /**
+     * @param geometry    the geometry, null for an empty shape
+     * @param fill        the ARGB value of the fill, NONE (or any transparent value) for no fill
+     * @param stroke      the ARGB value of the stroke, NONE (or any transparent value) for no stroke
+     * @param strokeWidth the width of the stroke
+     * @param fillRule    the fill rule
+     * @param lineJoin    the line join of the stroke
+     * @param lineCap     the line cap of the stroke
+     * @param layer       the layer the shape is drawn on
+     */
+    public SvgShape(final SvgGeometry geometry, final int fill, final int stroke, final double strokeWidth,
+                    final FillRule fillRule, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap, final int layer) {
+        this(geometry, fill, stroke, (float) Helper.clamp(0, Float.MAX_VALUE, strokeWidth), pack(fillRule, lineJoin, lineCap), layer);
+    }
+    private SvgShape(final SvgGeometry geometry, final int fill, final int stroke, final float strokeWidth, final byte style, final int layer) {
+        this.geometry    = null == geometry ? SvgGeometry.EMPTY : geometry;
+        this.fill        = fill;
+        this.stroke      = stroke;
+        this.strokeWidth = strokeWidth;
+        this.style       = style;
+        this.layer       = layer;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Creates a shape with the geometry and style of the given path. Only
+     * paths that are filled and stroked with colors (or nothing) and have
+     * no effect can be converted.
+     */
+    public static SvgShape of(final SvgPath svgPath) {
+        if (null != svgPath.getEffect()) { throw new IllegalArgumentException("Effects are not supported by SvgShape"); }
+        return new SvgShape(svgPath.getGeometry(), toArgb(svgPath.getFill()), toArgb(svgPath.getStroke()), svgPath.getStrokeWidth(),
+                            svgPath.getFillRule(), svgPath.getLineJoin(), svgPath.getLineCap(), svgPath.getLayer());
+    }
+
+    public SvgGeometry getGeometry() { return geometry; }
+    public SvgShape withGeometry(final SvgGeometry geometry) { return new SvgShape(geometry, fill, stroke, strokeWidth, style, layer); }
+
+    public int getFill() { return fill; }
+    public SvgShape withFill(final int fill) { return new SvgShape(geometry, fill, stroke, strokeWidth, style, layer); }
+    public boolean isFilled() { return isFilled(fill); }
+
+    public int getStroke() { return stroke; }
+    public SvgShape withStroke(final int stroke) { return new SvgShape(geometry, fill, stroke, strokeWidth, style, layer); }
+    public boolean isStroked() { return isStroked(stroke, strokeWidth); }
+
+    public double getStrokeWidth() { return strokeWidth; }
+    public SvgShape withStrokeWidth(final double strokeWidth) {
+        return new SvgShape(geometry, fill, stroke, (float) Helper.clamp(0, Float.MAX_VALUE, strokeWidth), style, layer);
+    }
+
+    public FillRule getFillRule() { return getFillRule(style); }
+
+    public StrokeLineJoin getLineJoin() { return getLineJoin(style); }
+
+    public StrokeLineCap getLineCap() { return getLineCap(style); }
+
+    byte getStyle() { return style; }
+
+    public int getLayer() { return layer; }
+    public SvgShape withLayer(final int layer) { return new SvgShape(geometry, fill, stroke, strokeWidth, style, layer); }
+
+    /**
+     * Returns the area that is covered when the shape is drawn, which are
+     * the bounds of the geometry padded by the stroke.
+     */
+    public Bounds getBounds() {
+        if (geometry.isEmpty()) { return new BoundingBox(0, 0, 0, 0); }
+        final double padding = getPadding(stroke, strokeWidth, style);
+        return new BoundingBox(geometry.getMinX() - padding, geometry.getMinY() - padding,
+                               geometry.getMaxX() - geometry.getMinX() + 2 * padding, geometry.getMaxY() - geometry.getMinY() + 2 * padding);
+    }
+
+    public void draw(final GraphicsContext ctx) {
+        draw(ctx, geometry);
+    }
+    /**
+     * Draws the shape with the level of detail for the given scale.
+     * @param ctx       the context to draw to
+     * @param scale     the scale the context is shown with
+     * @param tolerance the maximum deviation from the geometry in pixels
+     */
+    public void draw(final GraphicsContext ctx, final double scale, final double tolerance) {
+        draw(ctx, geometry.getLevelOfDetail(scale, tolerance));
+    }
+
+    private void draw(final GraphicsContext ctx, final SvgGeometry geometry) {
+        draw(ctx, geometry, fill, stroke, strokeWidth, style);
+    }
+
+    // Packed styles are shared with SvgShapeStore
+    static byte pack(final FillRule fillRule, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap) {
+        return (byte) (fillRule.ordinal() | lineJoin.ordinal() << 1 | lineCap.ordinal() << 3);
+    }
+    static FillRule getFillRule(final byte style) { return FILL_RULES[style & 0x1]; }
+    static StrokeLineJoin getLineJoin(final byte style) { return LINE_JOINS[style >> 1 & 0x3]; }
+    static StrokeLineCap getLineCap(final byte style) { return LINE_CAPS[style >> 3 & 0x3]; }
+
+    static boolean isFilled(final int fill) { return (fill >>> 24) != 0; }
+    static boolean isStroked(final int stroke, final double strokeWidth) { return (stroke >>> 24) != 0 && strokeWidth > 0; }
+
+    /**
+     * Returns the distance by which the stroke extends the geometry.
+     */
+    static double getPadding(final int stroke, final double strokeWidth, final byte style) {
+        return isStroked(stroke, strokeWidth) ? SvgPath.getStrokePadding(strokeWidth, getLineJoin(style), getLineCap(style)) : 0;
+    }
+
+    private static void draw(final GraphicsContext ctx, final SvgGeometry geometry, final int fill, final int stroke, final double strokeWidth, final byte style) {
+        final boolean doFill   = isFilled(fill);
+        final boolean doStroke = isStroked(stroke, strokeWidth);
+        if (geometry.isEmpty() || (!doFill && !doStroke)) { return; }
+        ctx.save();
+        ctx.beginPath();
+        geometry.appendTo(ctx);
+        if (doFill) {
+            ctx.setFillRule(getFillRule(style));
+            ctx.setFill(toColor(fill));
+            ctx.fill();
+        }
+        if (doStroke) {
+            ctx.setLineJoin(getLineJoin(style));
+            ctx.setLineCap(getLineCap(style));
+            ctx.setLineWidth(strokeWidth);
+            ctx.setStroke(toColor(stroke));
+            ctx.stroke();
+        }
+        ctx.restore();
+    }
+
+    /**
+     * Returns the color of the given ARGB value from a small cache, so that
+     * drawing does not create a new color for every shape.
+     */
+    static Color toColor(final int argb) {
+        final int         index  = (argb * 0x9E3779B9) >>> 24;
+        final CachedColor cached = COLORS[index];
+        if (null != cached && cached.argb == argb) { return cached.color; }
+        // The entries are immutable, threads that race at worst decode a color twice
+        final Color color = Helper.fromArgb(argb);
+        COLORS[index] = new CachedColor(argb, color);
+        return color;
+    }
+
+    private static int toArgb(final Paint paint) {
+        if (null != paint && !(paint instanceof Color)) { throw new IllegalArgumentException("Only colors are supported by SvgShape but got " + paint); }
+        return Helper.toArgb((Color) paint);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class CachedColor {
+        final int   argb;
+        final Color color;
+
+
+        CachedColor(final int argb, final Color color) {
+            this.argb  = argb;
+            this.color = color;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+
+/**
+ * Columnar store of shapes for content with many shapes whose style is
+ * updated as a whole, e.g. heatmaps. Every attribute of the shapes is kept
+ * in its own array (geometries, ARGB fills and strokes, stroke widths,
+ * packed styles like SvgShape and a visibility bitset) and the shapes are
+ * addressed by their index. The bulk setters change any number of shapes
+ * and trigger a single repaint of the area that changed.
+ * The store is only accessed from the JavaFX application thread and can
+ * be shown by one SvgNode at a time (see SvgNode.setShapeStore()).
+ */
+public final class SvgShapeStore {
+    public  static final int                           DEFAULT_CAPACITY = 1024;
+    private              SvgGeometry[]                 geometries;
+    private              int[]                         fills;
+    private              int[]                         strokes;
+    private              float[]                       strokeWidths;
+    private              byte[]                        styles;
+    private              double[]                      bounds;
+    private        final BitSet                        visible;
+    private              int                           size;
+    private              double                        dirtyMinX;
+    private              double                        dirtyMinY;
+    private              double                        dirtyMaxX;
+    private              double                        dirtyMaxY;
+    private              boolean                       changed;
+    private              Consumer<RenderMetrics.Cause> listener;
+
+
+    // ******************** Constructors **************************************
+    public SvgShapeStore() {
+        this(DEFAULT_CAPACITY);
+    }
+    public SvgShapeStore(final int initialCapacity) {
+        final int capacity = Math.max(1, initialCapacity);
+        geometries   = new SvgGeometry[capacity];
+        fills        = new int[capacity];
+        strokes      = new int[capacity];
+        strokeWidths = new float[capacity];
+        styles       = new byte[capacity];
+        bounds       = new double[capacity * 4];
+        visible      = new BitSet(capacity);
+    }
+
+
+    // ******************** Methods *******************************************
+    public int size() { return size; }
+
+    /**
+     * Adds a visible shape and returns its index.
+     */
+    public int add(final SvgGeometry geometry, final int fill, final int stroke, final double strokeWidth) {
+        return add(geometry, fill, stroke, strokeWidth, FillRule.NON_ZERO, StrokeLineJoin.MITER, StrokeLineCap.SQUARE);
+    }
+    public int add(final SvgGeometry geometry, final int fill, final int stroke, final double strokeWidth,
+                   final FillRule fillRule, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap) {
+        if (size == fills.length) { grow(); }
+        final int index = size++;
+        geometries[index]   = null == geometry ? SvgGeometry.EMPTY : geometry;
+        fills[index]        = fill;
+        strokes[index]      = stroke;
+        strokeWidths[index] = toWidth(strokeWidth);
+        styles[index]       = SvgShape.pack(fillRule, lineJoin, lineCap);
+        visible.set(index);
+        updateBounds(index);
+        addDirtyArea(index);
+        fireChange(RenderMetrics.Cause.LIST_CHANGE);
+        return index;
+    }
+    /**
+     * Adds a visible shape with the geometry and style of the given shape
+     * and returns its index. The layer of the shape is ignored.
+     */
+    public int add(final SvgShape svgShape) {
+        return add(svgShape.getGeometry(), svgShape.getFill(), svgShape.getStroke(), svgShape.getStrokeWidth(),
+                   svgShape.getFillRule(), svgShape.getLineJoin(), svgShape.getLineCap());
+    }
+
+    public void clear() {
+        if (0 == size) { return; }
+        for (int i = visible.nextSetBit(0) ; i >= 0 && i < size ; i = visible.nextSetBit(i + 1)) { addDirtyArea(i); }
+        Arrays.fill(geometries, 0, size, null);
+        visible.clear();
+        size = 0;
+        fireChange(RenderMetrics.Cause.LIST_CHANGE);
+    }
+
+    public SvgGeometry getGeometry(final int index) { return geometries[Objects.checkIndex(index, size)]; }
+    public void setGeometry(final int index, final SvgGeometry geometry) {
+        setGeometries(new int[] { index }, new SvgGeometry[] { geometry });
+    }
+    public void setGeometries(final int[] indices, final SvgGeometry[] geometries) {
+        checkLength(indices.length, geometries.length);
+        for (int i = 0 ; i < indices.length ; i++) {
+            final int         index    = Objects.checkIndex(indices[i], size);
+            final SvgGeometry geometry = null == geometries[i] ? SvgGeometry.EMPTY : geometries[i];
+            if (geometry == this.geometries[index]) { continue; }
+            addDirtyArea(index);
+            this.geometries[index] = geometry;
+            updateBounds(index);
+            addDirtyArea(index);
+        }
+        fireChange(RenderMetrics.Cause.DIRTY_SHAPE);
+    }
+
+    public int getFill(final int index) { return fills[Objects.checkIndex(index, size)]; }
+    public void setFill(final int index, final int fill) {
+        setFills(new int[] { index }, new int[] { fill });
+    }
+    /**
+     * Sets the fill of the shapes 0 to fills.length - 1, e.g. to update all
+     * shapes without an array of indices.
+     */
+    public void setFills(final int[] fills) {
+        if (fills.length > size) { throw new IndexOutOfBoundsException("Got " + fills.length + " fills for " + size + " shapes"); }
+        for (int i = 0 ; i < fills.length ; i++) {
+            if (fills[i] == this.fills[i]) { continue; }
+            this.fills[i] = fills[i];
+            addDirtyArea(i);
+        }
+        fireChange(RenderMetrics.Cause.DIRTY_SHAPE);
+    }
+    public void setFills(final int[] indices, final int[] fills) {
+        checkLength(indices.length, fills.length);
+        for (int i = 0 ; i < indices.length ; i++) {
+            final int index = Objects.checkIndex(indices[i], size);
+            if (fills[i] == this.fills[index]) { continue; }
+            this.fills[index] = fills[i];
+            addDirtyArea(index);
+        }
+        fireChange(RenderMetrics.Cause.DIRTY_SHAPE);
+    }
+    public void setFills(final int[] indices, final int fill) {
+        for (int i = 0 ; i < indices.length ; i++) {
+            final int index = Objects.checkIndex(indices[i], size);
+            if (fill == fills[index]) { continue; }
+            fills[index] = fill;
+            addDirtyArea(index);
+        }
+        fireChange(RenderMetrics.Cause.DIRTY_SHAPE);
+    }
+
+    public int getStroke(final int index) { return strokes[Objects.checkIndex(index, size)]; }
+    public void setStroke(final int index, final int stroke) {
+        setStrokes(new int[] { index }, new int[] { stroke });
+    }
+    public void setStrokes(final int[] indices, final int[] strokes) {
+        checkLength(indices.length, strokes.length);
+        for (int i = 0 ; i < indices.length ; i++) {
+            final int index = Objects.checkIndex(indices[i], size);
+            if (strokes[i] == this.strokes[index]) { continue; }
+            // Removing or adding the stroke changes the bounds
+            addDirtyArea(index);
+            this.strokes[index] = strokes[i];
+            updateBounds(index);
+            addDirtyArea(index);
+        }
+        fireChange(RenderMetrics.Cause.DIRTY_SHAPE);
+    }
+
+    public double getStrokeWidth(final int index) { return strokeWidths[Objects.checkIndex(index, size)]; }
+    public void setStrokeWidth(final int index, final double strokeWidth) {
+        setStrokeWidths(new int[] { index }, new float[] { toWidth(strokeWidth) });
+    }
+    public void setStrokeWidths(final int[] indices, final float[] strokeWidths) {
+        checkLength(indices.length, strokeWidths.length);
+        for (int i = 0 ; i < indices.length ; i++) {
+            final int   index       = Objects.checkIndex(indices[i], size);
+            final float strokeWidth = toWidth(strokeWidths[i]);
+            if (strokeWidth == this.strokeWidths[index]) { continue; }
+            addDirtyArea(index);
+            this.strokeWidths[index] = strokeWidth;
+            updateBounds(index);
+            addDirtyArea(index);
+        }
+        fireChange(RenderMetrics.Cause.DIRTY_SHAPE);
+    }
+
+    public FillRule getFillRule(final int index) { return SvgShape.getFillRule(styles[Objects.checkIndex(index, size)]); }
+
+    public StrokeLineJoin getLineJoin(final int index) { return SvgShape.getLineJoin(styles[Objects.checkIndex(index, size)]); }
+
+    public StrokeLineCap getLineCap(final int index) { return SvgShape.getLineCap(styles[Objects.checkIndex(index, size)]); }
+
+    public boolean isVisible(final int index) { return visible.get(Objects.checkIndex(index, size)); }
+    public void setVisible(final int index, final boolean visible) {
+        setVisible(new int[] { index }, visible);
+    }
+    public void setVisible(final int[] indices, final boolean visible) {
+        for (int i = 0 ; i < indices.length ; i++) {
+            final int index = Objects.checkIndex(indices[i], size);
+            if (visible == this.visible.get(index)) { continue; }
+            // Only visible shapes add to the dirty area
+            if (visible) {
+                this.visible.set(index);
+                addDirtyArea(index);
+            } else {
+                addDirtyArea(index);
+                this.visible.clear(index);
+            }
+        }
+        fireChange(RenderMetrics.Cause.DIRTY_SHAPE);
+    }
+
+    /**
+     * Returns the area that is covered when the shape with the given index
+     * is drawn, which are the bounds of its geometry padded by the stroke.
+     */
+    public Bounds getBounds(final int index) {
+        final int offset = Objects.checkIndex(index, size) * 4;
+        return new BoundingBox(bounds[offset], bounds[offset + 1], bounds[offset + 2] - bounds[offset], bounds[offset + 3] - bounds[offset + 1]);
+    }
+
+    /**
+     * Sets the listener that is informed once per change of the store.
+     */
+    void setListener(final Consumer<RenderMetrics.Cause> listener) { this.listener = listener; }
+
+    /**
+     * Returns the area that changed since the last call or null if nothing
+     * visible changed.
+     */
+    Bounds takeDirtyArea() {
+        if (!changed) { return null; }
+        changed = false;
+        return new BoundingBox(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX, dirtyMaxY - dirtyMinY);
+    }
+
+    /**
+     * Draws the visible shapes whose bounds intersect the given rectangle in
+     * the order of their indices and returns the number of drawn shapes.
+     * @param batchRenderer the renderer to draw with, begun with the context to draw to
+     * @param scale         the scale that determines the level of detail
+     * @param tolerance     the maximum deviation from the geometry in pixels
+     */
+    int draw(final BatchRenderer batchRenderer, final double minX, final double minY, final double maxX, final double maxY,
+             final double scale, final double tolerance) {
+        int drawn = 0;
+        for (int i = visible.nextSetBit(0) ; i >= 0 && i < size ; i = visible.nextSetBit(i + 1)) {
+            final int offset = i * 4;
+            if (bounds[offset + 2] <= minX || bounds[offset] >= maxX || bounds[offset + 3] <= minY || bounds[offset + 1] >= maxY) { continue; }
+            final SvgGeometry geometry = geometries[i].getLevelOfDetail(scale, tolerance);
+            if (!geometry.isEmpty()) {
+                batchRenderer.draw(geometry, bounds[offset], bounds[offset + 1], bounds[offset + 2], bounds[offset + 3], fills[i], strokes[i], strokeWidths[i], styles[i]);
+            }
+            drawn++;
+        }
+        return drawn;
+    }
+
+    private void updateBounds(final int index) {
+        final SvgGeometry geometry = geometries[index];
+        final int         offset   = index * 4;
+        if (geometry.isEmpty()) {
+            Arrays.fill(bounds, offset, offset + 4, 0);
+            return;
+        }
+        final double padding = SvgShape.getPadding(strokes[index], strokeWidths[index], styles[index]);
+        bounds[offset]     = geometry.getMinX() - padding;
+        bounds[offset + 1] = geometry.getMinY() - padding;
+        bounds[offset + 2] = geometry.getMaxX() + padding;
+        bounds[offset + 3] = geometry.getMaxY() + padding;
+    }
+
+    private void addDirtyArea(final int index) {
+        if (!visible.get(index)) { return; }
+        final int offset = index * 4;
+        if (bounds[offset] >= bounds[offset + 2] || bounds[offset + 1] >= bounds[offset + 3]) { return; }
+        if (changed) {
+            dirtyMinX = Math.min(dirtyMinX, bounds[offset]);
+            dirtyMinY = Math.min(dirtyMinY, bounds[offset + 1]);
+            dirtyMaxX = Math.max(dirtyMaxX, bounds[offset + 2]);
+            dirtyMaxY = Math.max(dirtyMaxY, bounds[offset + 3]);
+        } else {
+            dirtyMinX = bounds[offset];
+            dirtyMinY = bounds[offset + 1];
+            dirtyMaxX = bounds[offset + 2];
+            dirtyMaxY = bounds[offset + 3];
+            changed   = true;
+        }
+    }
+
+    private void fireChange(final RenderMetrics.Cause cause) {
+        if (changed && null != listener) { listener.accept(cause); }
+    }
+
+    private void grow() {
+        final int capacity = fills.length * 2;
+        geometries   = Arrays.copyOf(geometries, capacity);
+        fills        = Arrays.copyOf(fills, capacity);
+        strokes      = Arrays.copyOf(strokes, capacity);
+        strokeWidths = Arrays.copyOf(strokeWidths, capacity);
+        styles       = Arrays.copyOf(styles, capacity);
+        bounds       = Arrays.copyOf(bounds, capacity * 4);
+    }
+
+    private static float toWidth(final double strokeWidth) { return (float) Helper.clamp(0, Float.MAX_VALUE, strokeWidth); }
+
+    private static void checkLength(final int indices, final int values) {
+        if (indices != values) { throw new IllegalArgumentException("Got " + values + " values for " + indices + " indices"); }
+    }
+}
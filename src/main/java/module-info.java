@@ -1,6 +1,8 @@
 module svgnode {
     // Java
     requires java.base;
+    requires java.xml;
+    requires jdk.jfr;
 
     // Java-FX
     requires transitive javafx.base;
@@ -8,4 +10,5 @@ module svgnode {
     requires transitive javafx.controls;
 
     exports eu.hansolo.fx.svgnode;
+    exports eu.hansolo.fx.svgnode.icons;
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode.tools;
+
+import eu.hansolo.fx.svgnode.Helper;
+import eu.hansolo.fx.svgnode.SvgGeometry;
+import eu.hansolo.fx.svgnode.SvgLoader;
+import eu.hansolo.fx.svgnode.SvgPath;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.FillRule;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Build time tool that compiles SVG icons into Java classes. Every .svg
+ * file (all path elements) and every .path file (one SVG path string per
+ * line) in the input directory becomes a class that holds the compiled
+ * geometry of its shapes as static primitive arrays, so the icons never
+ * have to be parsed at runtime. In addition an index class named SvgIcons
+ * is generated that creates the icons by name.
+ *
+ * Usage: SvgIconCompiler &lt;input dir&gt; &lt;output dir&gt; &lt;package&gt;
+ */
+public final class SvgIconCompiler {
+    private static final int VALUES_PER_METHOD = 2000;
+    // Every distinct double takes two of the 65535 entries of the constant pool of a class
+    private static final int VALUES_PER_CLASS  = 8 * VALUES_PER_METHOD;
+    private static final int SHAPES_PER_CLASS  = 100;
+
+
+    // ******************** Constructors **************************************
+    private SvgIconCompiler() {}
+
+
+    // ******************** Methods *******************************************
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: SvgIconCompiler <input dir> <output dir> <package>");
+            System.exit(1);
+        }
+        compile(Paths.get(args[0]), Paths.get(args[1]), args[2]);
+    }
+
+    public static void compile(final Path inputDir, final Path outputDir, final String packageName) throws IOException {
+        final Path packageDir = outputDir.resolve(packageName.replace('.', '/'));
+        Files.createDirectories(packageDir);
+
+        final List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(inputDir)) {
+            try (Stream<Path> stream = Files.list(inputDir)) {
+                files.addAll(stream.filter(file -> file.toString().endsWith(".svg") || file.toString().endsWith(".path")).sorted().collect(Collectors.toList()));
+            }
+        }
+
+        final Map<String, String> icons      = new TreeMap<>();
+        final Set<String>         classNames = new HashSet<>();
+        for (Path file : files) {
+            final String fileName = file.getFileName().toString();
+            final String name     = fileName.substring(0, fileName.lastIndexOf('.'));
+            final List<SvgPath> shapes = new ArrayList<>();
+            if (fileName.endsWith(".svg")) {
+                SvgLoader.load(file, shapes::add);
+            } else {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) { shapes.add(new SvgPath(line.trim(), Color.BLACK, null, 1.0, FillRule.NON_ZERO, null, true)); }
+                }
+            }
+
+            String className = toClassName(name);
+            for (int i = 2 ; !classNames.add(className) ; i++) { className = toClassName(name) + i; }
+            icons.put(name, className);
+            try (Writer writer = Files.newBufferedWriter(packageDir.resolve(className + ".java"), StandardCharsets.UTF_8)) {
+                writeIcon(writer, packageName, className, name, fileName, shapes);
+            }
+        }
+
+        try (Writer writer = Files.newBufferedWriter(packageDir.resolve("SvgIcons.java"), StandardCharsets.UTF_8)) {
+            writeIndex(writer, packageName, icons);
+        }
+    }
+
+    private static void writeIcon(final Writer out, final String packageName, final String className, final String name, final String fileName, final List<SvgPath> shapes) throws IOException {
+        out.write("package " + packageName + ";\n\n");
+        out.write("import eu.hansolo.fx.svgnode.Helper;\n");
+        out.write("import eu.hansolo.fx.svgnode.SvgGeometry;\n");
+        out.write("import eu.hansolo.fx.svgnode.SvgPath;\n");
+        out.write("import javafx.scene.paint.Color;\n");
+        out.write("import javafx.scene.shape.FillRule;\n");
+        out.write("import javafx.scene.shape.StrokeLineCap;\n");
+        out.write("import javafx.scene.shape.StrokeLineJoin;\n\n");
+        out.write("import java.util.ArrayList;\n");
+        out.write("import java.util.List;\n\n\n");
+        out.write("/**\n * Generated by SvgIconCompiler from " + fileName + ", do not edit.\n */\n");
+        out.write("public final class " + className + " {\n");
+        out.write("    public static final String NAME = \"" + escape(name) + "\";\n");
+        out.write("\n\n    private " + className + "() {}\n\n\n");
+
+        // The shapes and their data are spread over nested classes, so that neither a method nor a constant pool gets too large
+        final int shapeClasses = (shapes.size() + SHAPES_PER_CLASS - 1) / SHAPES_PER_CLASS;
+        out.write("    public static List<SvgPath> create() {\n");
+        out.write("        final List<SvgPath> shapes = new ArrayList<>(" + shapes.size() + ");\n");
+        for (int shapeClass = 0 ; shapeClass < shapeClasses ; shapeClass++) { out.write("        Shapes" + shapeClass + ".create(shapes);\n"); }
+        out.write("        return shapes;\n    }\n\n");
+
+        out.write("    private static SvgPath shape(final SvgGeometry geometry, final Color fill, final Color stroke, final double strokeWidth, final FillRule fillRule, final StrokeLineJoin lineJoin, final StrokeLineCap lineCap, final boolean visible) {\n");
+        out.write("        final SvgPath svgPath = new SvgPath(null, fill, stroke, strokeWidth, fillRule, null, visible);\n");
+        out.write("        svgPath.setLineJoin(lineJoin);\n");
+        out.write("        svgPath.setLineCap(lineCap);\n");
+        out.write("        svgPath.setGeometry(geometry);\n");
+        out.write("        return svgPath;\n    }\n");
+
+        final DataWriter data = new DataWriter();
+        for (int shapeClass = 0 ; shapeClass < shapeClasses ; shapeClass++) {
+            final int from = shapeClass * SHAPES_PER_CLASS;
+            final int to   = Math.min(shapes.size(), from + SHAPES_PER_CLASS);
+            out.write("\n\n    private static final class Shapes" + shapeClass + " {\n");
+            for (int i = from ; i < to ; i++) {
+                out.write("        private static final SvgGeometry GEOMETRY_" + i + " = SvgGeometry.of(commands" + i + "(), coordinates" + i + "());\n");
+            }
+            out.write("\n\n        static void create(final List<SvgPath> shapes) {\n");
+            for (int i = from ; i < to ; i++) {
+                final SvgPath svgPath = shapes.get(i);
+                out.write("            shapes.add(shape(GEOMETRY_" + i + ", " + color(svgPath.getFill()) + ", " + color(svgPath.getStroke()) + ", " + svgPath.getStrokeWidth() + ", " +
+                          "FillRule." + svgPath.getFillRule().name() + ", StrokeLineJoin." + svgPath.getLineJoin().name() + ", StrokeLineCap." + svgPath.getLineCap().name() + ", " +
+                          svgPath.isVisible() + "));\n");
+            }
+            out.write("        }\n");
+
+            for (int i = from ; i < to ; i++) {
+                final SvgGeometry geometry = shapes.get(i).getGeometry();
+                final byte[]      commands = geometry.getCommands();
+                out.write("\n        private static byte[] commands" + i + "() {\n");
+                out.write("            final byte[] commands = new byte[" + commands.length + "];\n");
+                for (int chunk = 0 ; chunk * VALUES_PER_METHOD < commands.length ; chunk++) {
+                    final int chunkFrom = chunk * VALUES_PER_METHOD;
+                    final int chunkTo   = Math.min(commands.length, chunkFrom + VALUES_PER_METHOD);
+                    final StringBuilder values = new StringBuilder();
+                    for (int j = chunkFrom ; j < chunkTo ; j++) {
+                        values.append((j - chunkFrom) % 40 == 0 ? "\n                " : " ").append(commands[j]).append(j < chunkTo - 1 ? "," : "");
+                    }
+                    out.write("            " + data.add("commands" + i + "_" + chunk, "byte", values, chunkFrom, chunkTo - chunkFrom) + "(commands);\n");
+                }
+                out.write("            return commands;\n        }\n");
+
+                final double[] coordinates = geometry.getCoordinates();
+                out.write("\n        private static double[] coordinates" + i + "() {\n");
+                out.write("            final double[] coordinates = new double[" + coordinates.length + "];\n");
+                for (int chunk = 0 ; chunk * VALUES_PER_METHOD < coordinates.length ; chunk++) {
+                    final int chunkFrom = chunk * VALUES_PER_METHOD;
+                    final int chunkTo   = Math.min(coordinates.length, chunkFrom + VALUES_PER_METHOD);
+                    final StringBuilder values = new StringBuilder();
+                    for (int j = chunkFrom ; j < chunkTo ; j++) {
+                        values.append((j - chunkFrom) % 8 == 0 ? "\n                " : " ").append(Double.toString(coordinates[j])).append(j < chunkTo - 1 ? "," : "");
+                    }
+                    out.write("            " + data.add("coordinates" + i + "_" + chunk, "double", values, chunkFrom, chunkTo - chunkFrom) + "(coordinates);\n");
+                }
+                out.write("            return coordinates;\n        }\n");
+            }
+            out.write("    }\n");
+        }
+        out.write(data.finish());
+        out.write("}\n");
+    }
+
+    private static void writeIndex(final Writer out, final String packageName, final Map<String, String> icons) throws IOException {
+        out.write("package " + packageName + ";\n\n");
+        out.write("import eu.hansolo.fx.svgnode.SvgPath;\n\n");
+        out.write("import java.util.List;\n\n\n");
+        out.write("/**\n * Generated by SvgIconCompiler, do not edit.\n */\n");
+        out.write("public final class SvgIcons {\n");
+        out.write("    public static final List<String> NAMES = List.of(" + icons.keySet().stream().map(name -> "\"" + escape(name) + "\"").collect(Collectors.joining(", ")) + ");\n\n\n");
+        out.write("    private SvgIcons() {}\n\n\n");
+        out.write("    public static List<SvgPath> create(final String name) {\n");
+        out.write("        switch (name) {\n");
+        for (Map.Entry<String, String> icon : icons.entrySet()) {
+            out.write("            case \"" + escape(icon.getKey()) + "\": return " + icon.getValue() + ".create();\n");
+        }
+        out.write("            default: throw new IllegalArgumentException(\"No icon named \" + name);\n");
+        out.write("        }\n    }\n}\n");
+    }
+
+    private static String toClassName(final String name) {
+        final StringBuilder className = new StringBuilder();
+        boolean upperCase = true;
+        for (char c : name.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                className.append(upperCase ? Character.toUpperCase(c) : c);
+                upperCase = false;
+            } else {
+                upperCase = true;
+            }
+        }
+        if (className.length() == 0 || !Character.isJavaIdentifierStart(className.charAt(0))) { className.insert(0, "Icon"); }
+        if ("SvgIcons".equals(className.toString())) { className.append("Icon"); }
+        return className.toString();
+    }
+
+    private static String color(final Paint paint) {
+        if (null == paint) { return "null"; }
+        if (!(paint instanceof Color)) { throw new IllegalArgumentException("Only colors are supported but got " + paint); }
+        return String.format(Locale.ROOT, "Helper.fromArgb(0x%08X)", Helper.toArgb((Color) paint));
+    }
+
+    private static String escape(final String text) { return text.replace("\\", "\\\\").replace("\"", "\\\""); }
+
+
+    // ******************** Inner Classes *************************************
+    /**
+     * Collects the methods that fill the arrays of the shapes in nested data
+     * classes of at most VALUES_PER_CLASS values each.
+     */
+    private static class DataWriter {
+        private final StringBuilder code;
+        private       int           dataClass;
+        private       int           values;
+
+
+        DataWriter() {
+            code      = new StringBuilder();
+            dataClass = -1;
+        }
+
+
+        /**
+         * Adds a method that copies the given values into the target array
+         * at the given index and returns the qualified name of the method.
+         */
+        String add(final String name, final String type, final CharSequence valueList, final int index, final int count) {
+            if (dataClass < 0 || values + count > VALUES_PER_CLASS) {
+                if (dataClass >= 0) { code.append("    }\n"); }
+                dataClass++;
+                values = 0;
+                code.append("\n\n    private static final class Data").append(dataClass).append(" {\n");
+            }
+            values += count;
+            code.append("        static void ").append(name).append("(final ").append(type).append("[] target) {\n");
+            code.append("            System.arraycopy(new ").append(type).append("[] {").append(valueList).append("\n            }, 0, target, ").append(index).append(", ").append(count).append(");\n");
+            code.append("        }\n");
+            return "Data" + dataClass + "." + name;
+        }
+
+        String finish() { return dataClass < 0 ? "" : code + "    }\n"; }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.svgnode;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.FillRule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+
+/**
+ * The nodes are redrawn inside of runBatch(), so no redraw is scheduled
+ * and the tests do not need a running JavaFX toolkit.
+ */
+public class SvgNodeTest {
+
+    @Test
+    public void sharedPathIsTrackedByAllNodes() {
+        final SvgPath shared  = new SvgPath("M10 10h50v50h-50z", Color.RED, null, 0, FillRule.NON_ZERO, null, true);
+        final SvgPath overlap = new SvgPath("M40 40h50v50h-50z", Color.GREEN, null, 0, FillRule.NON_ZERO, null, true);
+        final SvgNode node1   = createNode(shared, overlap);
+        final SvgNode node2   = createNode(shared);
+
+        // A change of the shared path repaints it in both nodes
+        final long drawn1 = node1.getRenderMetrics().getShapesDrawn();
+        final long drawn2 = node2.getRenderMetrics().getShapesDrawn();
+        changeAndRedraw(() -> shared.setFill(Color.BLUE), node1, node2);
+        assertEquals(1, node1.getRenderMetrics().getRedrawCount(RenderMetrics.Cause.DIRTY_SHAPE));
+        assertEquals(1, node2.getRenderMetrics().getRedrawCount(RenderMetrics.Cause.DIRTY_SHAPE));
+        assertEquals(drawn1 + 2, node1.getRenderMetrics().getShapesDrawn());
+        assertEquals(drawn2 + 1, node2.getRenderMetrics().getShapesDrawn());
+        assertFalse(shared.isDirty());
+
+        // Removing it from the first node repaints the area it covered there
+        final long removed = node1.getRenderMetrics().getShapesDrawn();
+        changeAndRedraw(() -> node1.getShapes().remove(shared), node1, node2);
+        assertEquals(removed + 1, node1.getRenderMetrics().getShapesDrawn());
+
+        // Later changes only affect the node that still shows the path
+        changeAndRedraw(() -> shared.setFill(Color.YELLOW), node1, node2);
+        assertEquals(1, node1.getRenderMetrics().getRedrawCount(RenderMetrics.Cause.DIRTY_SHAPE));
+        assertEquals(2, node2.getRenderMetrics().getRedrawCount(RenderMetrics.Cause.DIRTY_SHAPE));
+    }
+
+    private static SvgNode createNode(final SvgPath... shapes) {
+        final SvgNode node = new SvgNode(shapes);
+        node.runBatch(() -> {
+            node.resize(100, 100);
+            node.redraw();
+        });
+        return node;
+    }
+
+    private static void changeAndRedraw(final Runnable change, final SvgNode node1, final SvgNode node2) {
+        node1.runBatch(() -> node2.runBatch(() -> {
+            change.run();
+            node1.redraw();
+            node2.redraw();
+        }));
+    }
+}